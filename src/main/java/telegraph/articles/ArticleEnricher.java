@@ -1,9 +1,12 @@
 package telegraph.articles;
 
+import telegraph.articles.models.ArticleReference;
 import telegraph.articles.models.RichArticle;
 
 import java.util.concurrent.Future;
 
 public interface ArticleEnricher {
 	Future<RichArticle> enrichArticleWithId(String articleId);
+
+	Future<ArticleReference> getArticleReferenceForId(String articleId);
 }
@@ -0,0 +1,18 @@
+package telegraph.articles.clients;
+
+import telegraph.articles.models.Image;
+import telegraph.articles.models.VersionedAsset;
+import telegraph.articles.models.Video;
+
+import java.util.concurrent.Future;
+
+/**
+ * Assets service client able to answer "not modified" when the caller already
+ * holds the current version of an asset. A null version always gets the full
+ * asset.
+ */
+public interface ConditionalAssetsServiceClient extends AssetsServiceClient {
+	Future<VersionedAsset<Image>> getImageByIdIfModified(String id, String version);
+
+	Future<VersionedAsset<Video>> getVideoByIdIfModified(String id, String version);
+}
@@ -0,0 +1,393 @@
+package telegraph.articles.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class ArticleCodec.
+ * 
+ * Compact, versioned binary format for RichArticle, Video and Image, meant for
+ * the off-heap, disk and remote cache tiers and for response writers.
+ * 
+ * Every record starts with a format version and a record type. A RichArticle
+ * record then holds a fixed header and a table with the offset of each of its
+ * strings, so that single fields (e.g. the video ids) can be read in place
+ * through a {@link RichArticleView} without decoding the whole record:
+ * 
+ * <pre>
+ * 0  byte    format version
+ * 1  byte    record type
+ * 2  byte    flags (hero image present, videos present)
+ * 3  byte    reserved
+ * 4  int     video count
+ * 8  int     record length, in bytes
+ * 12 int[]   string offsets from the record start: id, name, hero image id,
+ *            hero image alt text, then id and caption of each video
+ * .. strings length prefixed (int, -1 for null) UTF-8 bytes, one after the
+ *            other; the id of a null video has the length -2
+ * </pre>
+ * 
+ * Video and Image records are the version and type bytes followed by their two
+ * length prefixed strings. Integers are big endian.
+ * 
+ * The records are checked against the bounds of the source buffer as they are
+ * decoded: a truncated or corrupt one is rejected with an
+ * IllegalArgumentException.
+ */
+public final class ArticleCodec {
+
+	/** The current format version. */
+	public static final byte VERSION = 1;
+
+	static final byte RICH_ARTICLE = 1;
+	static final byte VIDEO = 2;
+	static final byte IMAGE = 3;
+
+	static final int FLAG_HERO_IMAGE = 1;
+	static final int FLAG_VIDEOS = 2;
+
+	static final int FLAGS_POSITION = 2;
+	static final int VIDEO_COUNT_POSITION = 4;
+	static final int LENGTH_POSITION = 8;
+	static final int OFFSETS_POSITION = 12;
+
+	/** The strings of a RichArticle record preceding the video ones. */
+	static final int ARTICLE_STRINGS = 4;
+
+	static final int ID = 0;
+	static final int NAME = 1;
+	static final int IMAGE_ID = 2;
+	static final int IMAGE_ALT_TEXT = 3;
+
+	private static final int NULL_LENGTH = -1;
+
+	static final int ABSENT_LENGTH = -2;
+
+	/** Marks the id of a null video among the strings to encode. */
+	private static final byte[] ABSENT = new byte[0];
+
+	private ArticleCodec() {
+	}
+
+	/**
+	 * Encodes a rich article into a new buffer, ready to be read.
+	 *
+	 * @param richArticle
+	 *            the rich article
+	 * @return the buffer
+	 */
+	public static ByteBuffer encode(RichArticle richArticle) {
+		byte[][] strings = strings(richArticle);
+		ByteBuffer target = ByteBuffer.allocate(articleLength(strings));
+		write(richArticle, strings, target);
+		target.flip();
+		return target;
+	}
+
+	/**
+	 * Encodes a rich article at the position of the target buffer, advancing
+	 * it past the record.
+	 *
+	 * @param richArticle
+	 *            the rich article
+	 * @param target
+	 *            the target buffer, big endian
+	 */
+	public static void encode(RichArticle richArticle, ByteBuffer target) {
+		write(richArticle, strings(richArticle), target);
+	}
+
+	/**
+	 * Gets the encoded length of a rich article.
+	 *
+	 * @param richArticle
+	 *            the rich article
+	 * @return the length in bytes
+	 */
+	public static int encodedLength(RichArticle richArticle) {
+		return articleLength(strings(richArticle));
+	}
+
+	/**
+	 * Decodes the rich article at the position of the source buffer, advancing
+	 * it past the record.
+	 *
+	 * @param source
+	 *            the source buffer
+	 * @return the rich article
+	 */
+	public static RichArticle decode(ByteBuffer source) {
+		RichArticleView view = view(source);
+		source.position(source.position() + view.length());
+		return view.toRichArticle();
+	}
+
+	/**
+	 * Gives in-place access to the fields of the rich article at the position
+	 * of the source buffer. The buffer position is not changed and its content
+	 * must not change while the view is in use.
+	 *
+	 * @param source
+	 *            the source buffer
+	 * @return the view
+	 */
+	public static RichArticleView view(ByteBuffer source) {
+		final int start = source.position();
+		checkHeader(source, start, RICH_ARTICLE);
+		checkArticle(source, start);
+		return new RichArticleView(source, start);
+	}
+
+	/**
+	 * Encodes a video into a new buffer, ready to be read.
+	 *
+	 * @param video
+	 *            the video
+	 * @return the buffer
+	 */
+	public static ByteBuffer encode(Video video) {
+		return encodeAsset(VIDEO, video.getId(), video.getCaption());
+	}
+
+	/**
+	 * Decodes the video at the position of the source buffer, advancing it past
+	 * the record.
+	 *
+	 * @param source
+	 *            the source buffer
+	 * @return the video
+	 */
+	public static Video decodeVideo(ByteBuffer source) {
+		checkHeader(source, source.position(), VIDEO);
+		source.position(source.position() + 2);
+		return new Video(readString(source), readString(source));
+	}
+
+	/**
+	 * Encodes an image into a new buffer, ready to be read.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the buffer
+	 */
+	public static ByteBuffer encode(Image image) {
+		return encodeAsset(IMAGE, image.getId(), image.getAltText());
+	}
+
+	/**
+	 * Decodes the image at the position of the source buffer, advancing it past
+	 * the record.
+	 *
+	 * @param source
+	 *            the source buffer
+	 * @return the image
+	 */
+	public static Image decodeImage(ByteBuffer source) {
+		checkHeader(source, source.position(), IMAGE);
+		source.position(source.position() + 2);
+		return new Image(readString(source), readString(source));
+	}
+
+	/**
+	 * Reads the string at the given absolute position.
+	 *
+	 * @param source
+	 *            the source buffer
+	 * @param position
+	 *            the position of the length prefix
+	 * @return the string, possibly null
+	 */
+	static String stringAt(ByteBuffer source, int position) {
+		int length = source.getInt(position);
+		if (length < 0) {
+			return null;
+		}
+		int start = position + Integer.BYTES;
+		if (source.hasArray()) {
+			return new String(source.array(), source.arrayOffset() + start, length, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[length];
+		ByteBuffer duplicate = source.duplicate();
+		duplicate.position(start);
+		duplicate.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Slices the UTF-8 bytes of the string at the given absolute position,
+	 * without copying them.
+	 *
+	 * @param source
+	 *            the source buffer
+	 * @param position
+	 *            the position of the length prefix
+	 * @return the bytes, null for a null string
+	 */
+	static ByteBuffer bytesAt(ByteBuffer source, int position) {
+		int length = source.getInt(position);
+		if (length < 0) {
+			return null;
+		}
+		ByteBuffer duplicate = source.duplicate();
+		duplicate.position(position + Integer.BYTES);
+		duplicate.limit(position + Integer.BYTES + length);
+		return duplicate.slice();
+	}
+
+	private static void checkHeader(ByteBuffer source, int position, byte type) {
+		if (source.order() != ByteOrder.BIG_ENDIAN) {
+			throw new IllegalArgumentException("Buffer must be big endian");
+		}
+		if (source.limit() - position < 2) {
+			throw corrupt("truncated header");
+		}
+		byte version = source.get(position);
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported format version " + version);
+		}
+		byte actualType = source.get(position + 1);
+		if (actualType != type) {
+			throw new IllegalArgumentException("Unexpected record type " + actualType + ", expected " + type);
+		}
+	}
+
+	/**
+	 * Checks the header, the string offsets and the string lengths of a
+	 * RichArticle record lie within the record, and the record within the
+	 * buffer, before any of them is used.
+	 */
+	private static void checkArticle(ByteBuffer source, int start) {
+		final int available = source.limit() - start;
+		if (available < OFFSETS_POSITION) {
+			throw corrupt("truncated header");
+		}
+		final int length = source.getInt(start + LENGTH_POSITION);
+		if (length > available) {
+			throw corrupt("record length " + length + " beyond the " + available + " bytes available");
+		}
+		final int videoCount = source.getInt(start + VIDEO_COUNT_POSITION);
+		final long strings = ARTICLE_STRINGS + 2L * videoCount;
+		long expected = OFFSETS_POSITION + Integer.BYTES * strings;
+		if (videoCount < 0 || expected > length) {
+			throw corrupt("video count " + videoCount + " in a record of " + length + " bytes");
+		}
+		for (int s = 0; s < strings; s++) {
+			final int offset = source.getInt(start + OFFSETS_POSITION + Integer.BYTES * s);
+			if (offset != expected || offset > length - Integer.BYTES) {
+				throw corrupt("string " + s + " at offset " + offset + ", expected " + expected);
+			}
+			final int stringLength = source.getInt(start + offset);
+			if (stringLength < ABSENT_LENGTH || (stringLength == ABSENT_LENGTH
+					&& (s < ARTICLE_STRINGS || (s - ARTICLE_STRINGS) % 2 != 0))) {
+				throw corrupt("string " + s + " of length " + stringLength);
+			}
+			expected += Integer.BYTES + Math.max(0, stringLength);
+		}
+		if (expected != length) {
+			throw corrupt("strings ending at " + expected + " in a record of " + length + " bytes");
+		}
+	}
+
+	private static IllegalArgumentException corrupt(String detail) {
+		return new IllegalArgumentException("Corrupt record: " + detail);
+	}
+
+	private static byte[][] strings(RichArticle richArticle) {
+		Collection<Video> videos = richArticle.getVideos();
+		Image heroImage = richArticle.getHeroImage();
+		byte[][] strings = new byte[ARTICLE_STRINGS + 2 * (videos == null ? 0 : videos.size())][];
+		strings[ID] = utf8(richArticle.getId());
+		strings[NAME] = utf8(richArticle.getName());
+		strings[IMAGE_ID] = heroImage == null ? null : utf8(heroImage.getId());
+		strings[IMAGE_ALT_TEXT] = heroImage == null ? null : utf8(heroImage.getAltText());
+		if (videos != null) {
+			int s = ARTICLE_STRINGS;
+			for (Video video : videos) {
+				strings[s++] = video == null ? ABSENT : utf8(video.getId());
+				strings[s++] = video == null ? null : utf8(video.getCaption());
+			}
+		}
+		return strings;
+	}
+
+	private static int articleLength(byte[][] strings) {
+		int length = OFFSETS_POSITION + Integer.BYTES * strings.length;
+		for (byte[] string : strings) {
+			length += stringLength(string);
+		}
+		return length;
+	}
+
+	private static void write(RichArticle richArticle, byte[][] strings, ByteBuffer target) {
+
+		final int start = target.position();
+		final int length = articleLength(strings);
+		int flags = (richArticle.getHeroImage() == null ? 0 : FLAG_HERO_IMAGE)
+				| (richArticle.getVideos() == null ? 0 : FLAG_VIDEOS);
+		target.put(VERSION).put(RICH_ARTICLE).put((byte) flags).put((byte) 0);
+		target.putInt((strings.length - ARTICLE_STRINGS) / 2);
+		target.putInt(length);
+		int offset = OFFSETS_POSITION + Integer.BYTES * strings.length;
+		for (byte[] string : strings) {
+			target.putInt(offset);
+			offset += stringLength(string);
+		}
+		for (byte[] string : strings) {
+			writeString(string, target);
+		}
+		if (target.position() - start != length) {
+			throw new IllegalStateException("Encoded length mismatch");
+		}
+
+	}
+
+	private static ByteBuffer encodeAsset(byte type, String id, String text) {
+		byte[] idBytes = utf8(id);
+		byte[] textBytes = utf8(text);
+		ByteBuffer target = ByteBuffer.allocate(2 + stringLength(idBytes) + stringLength(textBytes));
+		target.put(VERSION).put(type);
+		writeString(idBytes, target);
+		writeString(textBytes, target);
+		target.flip();
+		return target;
+	}
+
+	private static byte[] utf8(String string) {
+		return string == null ? null : string.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int stringLength(byte[] string) {
+		return Integer.BYTES + (string == null ? 0 : string.length);
+	}
+
+	private static void writeString(byte[] string, ByteBuffer target) {
+		if (string == null) {
+			target.putInt(NULL_LENGTH);
+		} else if (string == ABSENT) {
+			target.putInt(ABSENT_LENGTH);
+		} else {
+			target.putInt(string.length).put(string);
+		}
+	}
+
+	private static String readString(ByteBuffer source) {
+		int position = source.position();
+		if (source.remaining() < Integer.BYTES) {
+			throw corrupt("truncated string length");
+		}
+		int length = source.getInt(position);
+		if (length < NULL_LENGTH || length > source.remaining() - Integer.BYTES) {
+			throw corrupt("string of length " + length + " with " + source.remaining() + " bytes remaining");
+		}
+		String string = stringAt(source, position);
+		source.position(position + Integer.BYTES + Math.max(0, length));
+		return string;
+	}
+
+}
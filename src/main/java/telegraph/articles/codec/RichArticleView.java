@@ -0,0 +1,132 @@
+package telegraph.articles.codec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class RichArticleView.
+ * 
+ * Flyweight over an encoded RichArticle record: each accessor decodes only the
+ * field it returns, and the byte accessors slice the buffer without copying.
+ * 
+ * @see ArticleCodec
+ */
+public class RichArticleView {
+
+	/** The buffer holding the record. */
+	private final ByteBuffer buffer;
+
+	/** The absolute position of the record in the buffer. */
+	private final int start;
+
+	RichArticleView(ByteBuffer buffer, int start) {
+		this.buffer = buffer;
+		this.start = start;
+	}
+
+	/**
+	 * Gets the record length.
+	 *
+	 * @return the length in bytes
+	 */
+	public int length() {
+		return buffer.getInt(start + ArticleCodec.LENGTH_POSITION);
+	}
+
+	public String id() {
+		return string(ArticleCodec.ID);
+	}
+
+	public ByteBuffer idBytes() {
+		return ArticleCodec.bytesAt(buffer, offset(ArticleCodec.ID));
+	}
+
+	public String name() {
+		return string(ArticleCodec.NAME);
+	}
+
+	public boolean hasHeroImage() {
+		return (flags() & ArticleCodec.FLAG_HERO_IMAGE) != 0;
+	}
+
+	public String heroImageId() {
+		return string(ArticleCodec.IMAGE_ID);
+	}
+
+	public String heroImageAltText() {
+		return string(ArticleCodec.IMAGE_ALT_TEXT);
+	}
+
+	public boolean hasVideos() {
+		return (flags() & ArticleCodec.FLAG_VIDEOS) != 0;
+	}
+
+	public int videoCount() {
+		return buffer.getInt(start + ArticleCodec.VIDEO_COUNT_POSITION);
+	}
+
+	/**
+	 * Checks if a video of the record is not null.
+	 *
+	 * @param index
+	 *            the video index
+	 * @return false for a null video
+	 */
+	public boolean hasVideo(int index) {
+		return buffer.getInt(offset(videoString(index))) != ArticleCodec.ABSENT_LENGTH;
+	}
+
+	public String videoId(int index) {
+		return string(videoString(index));
+	}
+
+	public ByteBuffer videoIdBytes(int index) {
+		return ArticleCodec.bytesAt(buffer, offset(videoString(index)));
+	}
+
+	public String videoCaption(int index) {
+		return string(videoString(index) + 1);
+	}
+
+	/**
+	 * Decodes the whole record.
+	 *
+	 * @return the rich article
+	 */
+	public RichArticle toRichArticle() {
+		Image heroImage = hasHeroImage() ? new Image(heroImageId(), heroImageAltText()) : null;
+		List<Video> videos = null;
+		if (hasVideos()) {
+			videos = new ArrayList<>(videoCount());
+			for (int v = 0; v < videoCount(); v++) {
+				videos.add(hasVideo(v) ? new Video(videoId(v), videoCaption(v)) : null);
+			}
+		}
+		return new RichArticle(id(), name(), heroImage, videos);
+	}
+
+	private int flags() {
+		return buffer.get(start + ArticleCodec.FLAGS_POSITION);
+	}
+
+	private int videoString(int index) {
+		if (index < 0 || index >= videoCount()) {
+			throw new IndexOutOfBoundsException("Video " + index + " of " + videoCount());
+		}
+		return ArticleCodec.ARTICLE_STRINGS + 2 * index;
+	}
+
+	private int offset(int string) {
+		return start + buffer.getInt(start + ArticleCodec.OFFSETS_POSITION + Integer.BYTES * string);
+	}
+
+	private String string(int string) {
+		return ArticleCodec.stringAt(buffer, offset(string));
+	}
+
+}
@@ -1,45 +1,84 @@
 package telegraph.articles.implementation;
 
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
-import lombok.extern.slf4j.Slf4j;
 import telegraph.articles.ArticleEnricher;
-import telegraph.articles.clients.ArticleRepositoryClient;
 import telegraph.articles.implementation.RichArticleSteps.RichArticleStepsBuilder;
 import telegraph.articles.models.ArticleReference;
 import telegraph.articles.models.RichArticle;
 import telegraph.articles.models.Video;
+import telegraph.articles.tracing.AssetFetchEvent;
+import telegraph.articles.tracing.EnrichmentEvent;
+import telegraph.articles.tracing.ReferenceFetchEvent;
 
-@Slf4j
+/**
+ * The Class ArticleEnricherImpl.
+ * 
+ * Fetches the article reference, then its hero image and videos
+ * concurrently. The stages of an enrichment run in an {@link EnrichmentScope}
+ * on a shared pool of at most enrichment.threads threads, the stages beyond
+ * waiting in its queue of at most enrichment.queue stages: beyond that, the
+ * enrichment fails at once instead of queueing for an unbounded time.
+ * Cancelling the returned future, or the failure of any stage, cancels the
+ * fetches still in progress for the article.
+ */
 @Component
 public class ArticleEnricherImpl implements ArticleEnricher {
 
-	@Value("${services.images.timeout}")
-	private long imageServiceTimeout;
-
-	@Value("${services.videos.timeout}")
-	private long videoServiceTimeout;
+	/** The threads running the enrichment stages, at most. */
+	@Value("${enrichment.threads}")
+	private int threads;
 
-	@Value("${services.reference.timeout}")
-	private long referenceServiceTimeout;
+	/** The stages waiting for a thread, at most. */
+	@Value("${enrichment.queue}")
+	private int queue;
 
-	/** Article repository client service. */
+	/** Looks up the article references, shared with the prefetches. */
 	@Autowired
-	ArticleRepositoryClient articleRepositoryClient;
+	ArticleReferences articleReferences;
 	
 	@Autowired
 	CacheableAssetsServiceClient casheableAssetsServiceClient;
 
+	/** Counts and logs the failed enrichments. */
+	@Autowired
+	FailureLog failureLog;
+
+	/** Prefetches the likely next articles, if enabled. */
+	@Autowired(required = false)
+	Prefetcher prefetcher;
+
+	/** Runs the enrichment stages, which block on the downstream calls. */
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	void startExecutor() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("enrichment-");
+		threadFactory.setDaemon(true);
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue),
+				threadFactory);
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	void stopExecutor() {
+		executor.shutdownNow();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -48,30 +87,58 @@ public class ArticleEnricherImpl implements ArticleEnricher {
 	@Override
 	public Future<RichArticle> enrichArticleWithId(String articleId) {
 
+		final EnrichmentEvent event = EnrichmentEvent.start(articleId);
+		final EnrichmentScope scope = new EnrichmentScope(executor);
 		final RichArticleStepsBuilder builder = RichArticleSteps.builder();
-		return getArticleReference(articleId).thenCompose(articleReference -> compose(articleReference, builder))
-				.thenApply(richArticleStepsBuilder -> richArticleStepsBuilder.build());
+		final CompletableFuture<RichArticle> enrichment = scope.bind(getArticleReference(scope, articleId)
+				.thenCompose(articleReference -> compose(scope, articleReference, builder))
+				.<RichArticle>thenApply(richArticleStepsBuilder -> richArticleStepsBuilder.build()));
+		enrichment.whenComplete((richArticle, t) -> {
+			event.complete(t);
+			if (t == null) {
+				if (prefetcher != null) {
+					prefetcher.served(articleId);
+				}
+			} else if (!enrichment.isCancelled()) {
+				failureLog.record(articleId, t);
+			}
+		});
+		return enrichment;
+
+	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see telegraph.articles.ArticleEnricher#getArticleReferenceForId(java.lang.String)
+	 */
+	@Override
+	public Future<ArticleReference> getArticleReferenceForId(String articleId) {
+		final EnrichmentScope scope = new EnrichmentScope(executor);
+		return scope.bind(getArticleReference(scope, articleId));
 	}
 
 	/**
 	 * Gets the article reference.
 	 *
+	 * @param scope
+	 *            the enrichment scope
 	 * @param articleId
 	 *            the article id
 	 * @return the article reference object
 	 */
-	private CompletableFuture<ArticleReference> getArticleReference(String articleId) {
-		return CompletableFuture.supplyAsync(() -> {
+	private CompletableFuture<ArticleReference> getArticleReference(EnrichmentScope scope, String articleId) {
+		final long submitted = System.nanoTime();
+		return scope.supplyAsync(() -> {
+			final ReferenceFetchEvent event = ReferenceFetchEvent.start(articleId, submitted);
 			try {
-				return articleRepositoryClient.getArticleReferenceForId(articleId).get(referenceServiceTimeout,
-						TimeUnit.MILLISECONDS);
-			} catch (Exception e) {
-				throw new ServiceException(e);
+				ArticleReference articleReference = articleReferences.get(articleId);
+				event.complete(null);
+				return articleReference;
+			} catch (RuntimeException e) {
+				event.complete(e);
+				throw e;
 			}
-		}, Executors.newSingleThreadExecutor()).exceptionally(t -> {
-			exceptionHandler(t);
-			return null;
 		});
 	}
 
@@ -80,16 +147,19 @@ public class ArticleEnricherImpl implements ArticleEnricher {
 	 * 
 	 * Retrieves concurrently the hero image and the video collection
 	 *
+	 * @param scope
+	 *            the enrichment scope
 	 * @param articleReference
 	 *            the article reference
 	 * @param builder
 	 *            the builder
 	 * @return the completable future
 	 */
-	private CompletableFuture<RichArticleStepsBuilder> compose(ArticleReference articleReference,
-			RichArticleStepsBuilder builder) {
+	private CompletableFuture<RichArticleStepsBuilder> compose(EnrichmentScope scope,
+			ArticleReference articleReference, RichArticleStepsBuilder builder) {
 
-		return CompletableFuture.allOf(getHeroImage(articleReference, builder), getVideos(articleReference, builder))
+		return CompletableFuture
+				.allOf(getHeroImage(scope, articleReference, builder), getVideos(scope, articleReference, builder))
 				.thenApply(v -> builder.name(articleReference.getName()).id(articleReference.getId()));
 
 	}
@@ -97,19 +167,29 @@ public class ArticleEnricherImpl implements ArticleEnricher {
 	/**
 	 * Gets the hero image with an async call.
 	 *
+	 * @param scope
+	 *            the enrichment scope
 	 * @param articleReference
 	 *            the article reference
 	 * @param builder
 	 *            the builder
 	 * @return the hero image
 	 */
-	private CompletableFuture<RichArticleStepsBuilder> getHeroImage(ArticleReference articleReference,
-			RichArticleStepsBuilder builder) {
-		return CompletableFuture.supplyAsync(() -> 
-			builder.heroImage(casheableAssetsServiceClient.getImageByIdCacheable(articleReference)), 
-			Executors.newSingleThreadExecutor()).exceptionally(t -> {
-			exceptionHandler(t);
-			return null;
+	private CompletableFuture<RichArticleStepsBuilder> getHeroImage(EnrichmentScope scope,
+			ArticleReference articleReference, RichArticleStepsBuilder builder) {
+		final long submitted = System.nanoTime();
+		return scope.supplyAsync(() -> {
+			final AssetFetchEvent event = AssetFetchEvent.start(articleReference.getId(),
+					articleReference.getHeroImageUrl(), AssetFetchEvent.IMAGE, submitted);
+			Throwable failure = null;
+			try {
+				return builder.heroImage(casheableAssetsServiceClient.getImageByIdCacheable(articleReference));
+			} catch (RuntimeException | Error e) {
+				failure = e;
+				throw e;
+			} finally {
+				event.complete(failure);
+			}
 		});
 	}
 
@@ -118,17 +198,19 @@ public class ArticleEnricherImpl implements ArticleEnricher {
 	 * 
 	 * Retrieves concurrently all the videos in the video collection
 	 *
+	 * @param scope
+	 *            the enrichment scope
 	 * @param articleReference
 	 *            the article reference
 	 * @param builder
 	 *            the builder
 	 * @return the videos
 	 */
-	private CompletableFuture<RichArticleStepsBuilder> getVideos(ArticleReference articleReference,
-			RichArticleStepsBuilder builder) {
+	private CompletableFuture<RichArticleStepsBuilder> getVideos(EnrichmentScope scope,
+			ArticleReference articleReference, RichArticleStepsBuilder builder) {
 
 		List<CompletableFuture<Video>> videoCompletableFutures = articleReference.getVideoUrls().stream().
-				map(url -> getVideo(url)).collect(Collectors.toList());
+				map(url -> getVideo(scope, articleReference.getId(), url)).collect(Collectors.toList());
 		return supplyAllOf(videoCompletableFutures).thenApply(videos -> builder.videos(videos));
 
 	}
@@ -136,16 +218,27 @@ public class ArticleEnricherImpl implements ArticleEnricher {
 	/**
 	 * Gets a single video with an async call.
 	 *
+	 * @param scope
+	 *            the enrichment scope
+	 * @param articleId
+	 *            the id of the article the video belongs to
 	 * @param videoId
 	 *            the video id
 	 * @return the video
 	 */
-	private CompletableFuture<Video> getVideo(String videoId) {
-		return CompletableFuture.supplyAsync(() -> {
-			return casheableAssetsServiceClient.getVideoByIdCacheable(videoId);
-		}, Executors.newSingleThreadExecutor()).exceptionally(t -> {
-			exceptionHandler(t);
-			return null;
+	private CompletableFuture<Video> getVideo(EnrichmentScope scope, String articleId, String videoId) {
+		final long submitted = System.nanoTime();
+		return scope.supplyAsync(() -> {
+			final AssetFetchEvent event = AssetFetchEvent.start(articleId, videoId, AssetFetchEvent.VIDEO, submitted);
+			Throwable failure = null;
+			try {
+				return casheableAssetsServiceClient.getVideoByIdCacheable(videoId);
+			} catch (RuntimeException | Error e) {
+				failure = e;
+				throw e;
+			} finally {
+				event.complete(failure);
+			}
 		});
 	}
 
@@ -167,15 +260,4 @@ public class ArticleEnricherImpl implements ArticleEnricher {
 				.thenApply(v -> futures.stream().map(future -> future.join()).collect(Collectors.<T>toList()));
 	}
 
-	private void exceptionHandler(Throwable t) {
-
-		log.error(t.getMessage(), t);
-		ServiceException serviceException = (ServiceException) t.getCause();
-		if (serviceException.getCause() instanceof TimeoutException) {
-			throw new ServiceTimeoutException((TimeoutException) serviceException.getCause());
-		}
-		throw serviceException;
-
-	}
-
 }
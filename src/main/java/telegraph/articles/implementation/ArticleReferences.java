@@ -0,0 +1,48 @@
+package telegraph.articles.implementation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.models.ArticleReference;
+
+/**
+ * The Class ArticleReferences.
+ *
+ * Looks up the article references, for the enrichments as for the
+ * prefetches: concurrent lookups of the same article share a single call to
+ * the article repository, awaited within the reference timeout, whose
+ * latency feeds the {@link ServiceTimeouts}.
+ */
+@Component
+public class ArticleReferences {
+
+	/** The timeouts of the downstream services. */
+	@Autowired
+	ServiceTimeouts serviceTimeouts;
+
+	/** Article repository client service. */
+	@Autowired
+	ArticleRepositoryClient articleRepositoryClient;
+
+	/** The lookups in progress, by article id. */
+	final InFlightFetches<ArticleReference> fetches = new InFlightFetches<>(ServiceCalls.REFERENCE);
+
+	/**
+	 * Gets the reference of an article, joining the lookup in progress if
+	 * any.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @return the article reference
+	 * @throws ServiceTimeoutException
+	 *             if the repository did not answer in time
+	 * @throws ServiceException
+	 *             if the repository failed or the wait was interrupted
+	 */
+	ArticleReference get(String articleId) {
+		return fetches.await(articleId, () -> articleRepositoryClient.getArticleReferenceForId(articleId),
+				serviceTimeouts);
+	}
+
+}
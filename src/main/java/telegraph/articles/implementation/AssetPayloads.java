@@ -0,0 +1,158 @@
+package telegraph.articles.implementation;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.ehcache.EhCacheCache;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class AssetPayloads.
+ *
+ * Content-addressed layer of the "images" and "videos" caches: the images
+ * and videos loaded into the caches share their payload (alt text, caption)
+ * with any cached asset of the same content, whatever its id. The shared
+ * payloads are released as the cache entries are evicted, expire or are
+ * removed.
+ */
+@Component
+@ManagedResource(objectName = "telegraph:type=Cache,name=payloads", description = "Deduplicated asset payloads")
+public class AssetPayloads {
+
+	/** The cache manager, holding the asset caches. */
+	@Autowired
+	CacheManager cacheManager;
+
+	/** The payloads of the "images" cache, keyed as the cache: by article id. */
+	private final PayloadStore images = new PayloadStore();
+
+	/** The payloads of the "videos" cache, by video id. */
+	private final PayloadStore videos = new PayloadStore();
+
+	@PostConstruct
+	void listen() {
+		listen(cacheManager.getCache("images"), images);
+		listen(cacheManager.getCache("videos"), videos);
+	}
+
+	/**
+	 * Shares the payload of an image being cached.
+	 *
+	 * @param key
+	 *            the cache key
+	 * @param image
+	 *            the image loaded
+	 * @return the image to cache
+	 */
+	public Image share(String key, Image image) {
+		String altText = images.acquire(key, image.getAltText());
+		return altText == image.getAltText() ? image : new Image(image.getId(), altText);
+	}
+
+	/**
+	 * Shares the payload of a video being cached.
+	 *
+	 * @param key
+	 *            the cache key
+	 * @param video
+	 *            the video loaded
+	 * @return the video to cache
+	 */
+	public Video share(String key, Video video) {
+		String caption = videos.acquire(key, video.getCaption());
+		return caption == video.getCaption() ? video : new Video(video.getId(), caption);
+	}
+
+	/**
+	 * Releases all the payloads, when the caches are cleared.
+	 */
+	public void clear() {
+		images.clear();
+		videos.clear();
+	}
+
+	/**
+	 * Gets the number of cached entries for each distinct payload.
+	 *
+	 * @return the dedup ratio
+	 */
+	@ManagedAttribute(description = "Cached entries per distinct payload")
+	public double getDedupRatio() {
+		int payloads = images.getPayloads() + videos.getPayloads();
+		return payloads == 0 ? 1 : (double) (images.getEntries() + videos.getEntries()) / payloads;
+	}
+
+	/**
+	 * Gets the estimated heap saved by sharing the payloads.
+	 *
+	 * @return the bytes saved
+	 */
+	@ManagedAttribute(description = "Estimated heap saved by sharing the payloads (bytes)")
+	public long getBytesSaved() {
+		return images.getLogicalBytes() - images.getStoredBytes() + videos.getLogicalBytes()
+				- videos.getStoredBytes();
+	}
+
+	/**
+	 * Gets the estimated heap retained by the shared payloads.
+	 *
+	 * @return the bytes stored
+	 */
+	@ManagedAttribute(description = "Estimated heap retained by the shared payloads (bytes)")
+	public long getBytesStored() {
+		return images.getStoredBytes() + videos.getStoredBytes();
+	}
+
+	/**
+	 * Follows the removals from an ehcache backed cache. Other caches only
+	 * lose entries when cleared.
+	 */
+	private static void listen(Cache cache, PayloadStore store) {
+		if (cache instanceof EhCacheCache) {
+			((EhCacheCache) cache).getNativeCache().getCacheEventNotificationService()
+					.registerListener(new ReleasingListener(store));
+		}
+	}
+
+	private static final class ReleasingListener extends CacheEventListenerAdapter {
+
+		private final PayloadStore store;
+
+		ReleasingListener(PayloadStore store) {
+			this.store = store;
+		}
+
+		@Override
+		public void notifyElementRemoved(Ehcache cache, Element element) throws CacheException {
+			store.release(String.valueOf(element.getObjectKey()));
+		}
+
+		@Override
+		public void notifyElementExpired(Ehcache cache, Element element) {
+			store.release(String.valueOf(element.getObjectKey()));
+		}
+
+		@Override
+		public void notifyElementEvicted(Ehcache cache, Element element) {
+			store.release(String.valueOf(element.getObjectKey()));
+		}
+
+		@Override
+		public void notifyRemoveAll(Ehcache cache) {
+			store.clear();
+		}
+
+	}
+
+}
@@ -1,33 +1,70 @@
 package telegraph.articles.implementation;
 
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.clients.ConditionalAssetsServiceClient;
 import telegraph.articles.models.ArticleReference;
 import telegraph.articles.models.Image;
+import telegraph.articles.models.VersionedAsset;
 import telegraph.articles.models.Video;
+import telegraph.articles.tracing.AssetFetchEvent;
+import telegraph.articles.tracing.AssetLoadEvent;
 
+/**
+ * The Class CacheableAssetsServiceClientImpl.
+ * 
+ * The "images" and "videos" caches hold the fresh assets. When the assets
+ * service supports conditional fetches, the "imageVersions" and
+ * "videoVersions" caches keep, for a longer time, the last asset received
+ * together with its version: once the fresh entry has expired the asset is
+ * revalidated, and a "not modified" answer puts the kept asset back in the
+ * fresh cache without transferring it again.
+ * 
+ * Concurrent loads of the same asset share a single call to the assets
+ * service, conditional on the same version if any, cancelled only when none
+ * of them waits on it any longer. The loaded assets, and the kept ones, share
+ * their payload with the cached assets of the same content
+ * ({@link AssetPayloads}), and their id with the reference they were loaded
+ * for, which holds the cache key.
+ */
 @Component
 public class CacheableAssetsServiceClientImpl implements CacheableAssetsServiceClient{
 	
-	@Value("${services.images.timeout}")
-	private long imageServiceTimeout;
-
-	@Value("${services.videos.timeout}")
-	private long videoServiceTimeout;
-
-	@Value("${services.reference.timeout}")
-	private long referenceServiceTimeout;
+	/** The timeouts of the downstream services. */
+	@Autowired
+	ServiceTimeouts serviceTimeouts;
 	
 	/** Assets service client service. */
 	@Autowired
 	AssetsServiceClient assetsServiceClient;
+
+	/** The cache manager, holding the asset versions caches. */
+	@Autowired
+	CacheManager cacheManager;
+
+	/** Shares the payloads of the cached assets with the same content. */
+	@Autowired
+	AssetPayloads assetPayloads;
+
+	private final InFlightFetches<Image> imageFetches = new InFlightFetches<>(ServiceCalls.IMAGES);
+
+	private final InFlightFetches<Video> videoFetches = new InFlightFetches<>(ServiceCalls.VIDEOS);
+
+	private final InFlightFetches<VersionedAsset<Image>> imageRevalidations = new InFlightFetches<>(
+			ServiceCalls.IMAGES);
+
+	private final InFlightFetches<VersionedAsset<Video>> videoRevalidations = new InFlightFetches<>(
+			ServiceCalls.VIDEOS);
 	
 	/* (non-Javadoc)
 	 * @see telegraph.articles.implementation.CacheableAssetsServiceClientP#getHeroImageCacheable(telegraph.articles.models.ArticleReference)
@@ -36,11 +73,25 @@ public class CacheableAssetsServiceClientImpl implements CacheableAssetsServiceC
 	@Cacheable(cacheNames = { "images" }, key = "#articleReference.id")
 	public Image getImageByIdCacheable(ArticleReference articleReference){
 
+		final String imageId = articleReference.getHeroImageUrl();
+		final AssetLoadEvent event = AssetLoadEvent.start(imageId, AssetFetchEvent.IMAGE);
 		try {
-			return assetsServiceClient.getImageById(articleReference.getHeroImageUrl()).get(imageServiceTimeout,
-					TimeUnit.MILLISECONDS);
-		} catch (Exception e) {
-			throw new ServiceException(e);
+			final String articleId = articleReference.getId();
+			Image image;
+			if (assetsServiceClient instanceof ConditionalAssetsServiceClient) {
+				ConditionalAssetsServiceClient conditionalClient = (ConditionalAssetsServiceClient) assetsServiceClient;
+				image = revalidate(cacheManager.getCache("imageVersions"), imageId,
+						version -> conditionalClient.getImageByIdIfModified(imageId, version), imageRevalidations,
+						serviceTimeouts, loaded -> assetPayloads.share(articleId, withId(imageId, loaded)));
+			} else {
+				image = assetPayloads.share(articleId, withId(imageId, imageFetches.await(imageId,
+						() -> assetsServiceClient.getImageById(imageId), serviceTimeouts)));
+			}
+			event.complete(null);
+			return image;
+		} catch (RuntimeException e) {
+			event.complete(e);
+			throw e;
 		}
 	}
 	
@@ -51,21 +102,112 @@ public class CacheableAssetsServiceClientImpl implements CacheableAssetsServiceC
 	@Cacheable(cacheNames = { "videos" }, key = "#videoId")
 	public Video getVideoByIdCacheable(String videoId) {
 
+		final AssetLoadEvent event = AssetLoadEvent.start(videoId, AssetFetchEvent.VIDEO);
 		try {
-			return assetsServiceClient.getVideoById(videoId).get(videoServiceTimeout, TimeUnit.MILLISECONDS);
-		} catch (Exception e) {
-			throw new ServiceException(e);
+			Video video;
+			if (assetsServiceClient instanceof ConditionalAssetsServiceClient) {
+				ConditionalAssetsServiceClient conditionalClient = (ConditionalAssetsServiceClient) assetsServiceClient;
+				video = revalidate(cacheManager.getCache("videoVersions"), videoId,
+						version -> conditionalClient.getVideoByIdIfModified(videoId, version), videoRevalidations,
+						serviceTimeouts, loaded -> assetPayloads.share(videoId, withId(videoId, loaded)));
+			} else {
+				video = assetPayloads.share(videoId, withId(videoId, videoFetches.await(videoId,
+						() -> assetsServiceClient.getVideoById(videoId), serviceTimeouts)));
+			}
+			event.complete(null);
+			return video;
+		} catch (RuntimeException e) {
+			event.complete(e);
+			throw e;
+		}
+
+	}
+
+	/**
+	 * Fetches an asset conditionally on the version kept in the versions
+	 * cache, if any.
+	 *
+	 * @param <T>
+	 *            the asset type
+	 * @param versions
+	 *            the versions cache
+	 * @param assetId
+	 *            the asset id
+	 * @param conditionalFetch
+	 *            the conditional fetch, given the kept version or null
+	 * @param revalidations
+	 *            the conditional fetches in progress
+	 * @param serviceTimeouts
+	 *            the service timeouts
+	 * @param share
+	 *            shares the payload of the asset being cached
+	 * @return the kept asset if not modified, the fetched one otherwise
+	 */
+	private static <T> T revalidate(Cache versions, String assetId,
+			Function<String, Future<VersionedAsset<T>>> conditionalFetch,
+			InFlightFetches<VersionedAsset<T>> revalidations, ServiceTimeouts serviceTimeouts,
+			UnaryOperator<T> share) {
+
+		@SuppressWarnings("unchecked")
+		VersionedAsset<T> kept = versions.get(assetId, VersionedAsset.class);
+		/* only the callers holding the same version can share an answer */
+		final String version = kept == null ? null : kept.getVersion();
+		VersionedAsset<T> answer = revalidations.await(version == null ? assetId : assetId + '\n' + version,
+				() -> conditionalFetch.apply(version), serviceTimeouts);
+		if (answer.isModified()) {
+			/* the kept asset holds the shared payload too, not a copy of it */
+			final T asset = share.apply(answer.getAsset());
+			versions.put(assetId, VersionedAsset.modified(asset, answer.getVersion()));
+			return asset;
+		}
+		if (kept == null) {
+			throw new ServiceException(revalidations.getService(), new IllegalStateException(
+					"Asset " + assetId + " reported as not modified without a version"));
 		}
+		/* re-put to extend the lifetime of the kept entry as well */
+		versions.put(assetId, kept);
+		return share.apply(kept.getAsset());
 
 	}
 	
+	/**
+	 * Shares the id of a loaded image with the url of the article reference,
+	 * an equal string received from another service.
+	 *
+	 * @param imageId
+	 *            the hero image url of the reference
+	 * @param image
+	 *            the image loaded
+	 * @return the image holding the reference's id
+	 */
+	private static Image withId(String imageId, Image image) {
+		return image.getId() == imageId || !imageId.equals(image.getId()) ? image
+				: new Image(imageId, image.getAltText());
+	}
+
+	/**
+	 * Shares the id of a loaded video with the url of the article reference,
+	 * which is also its cache key.
+	 *
+	 * @param videoId
+	 *            the video url of the reference
+	 * @param video
+	 *            the video loaded
+	 * @return the video holding the reference's id
+	 */
+	private static Video withId(String videoId, Video video) {
+		return video.getId() == videoId || !videoId.equals(video.getId()) ? video
+				: new Video(videoId, video.getCaption());
+	}
+
 	/* (non-Javadoc)
 	 * @see telegraph.articles.implementation.CacheableAssetsServiceClientP#cacheClear()
 	 */
 	@Override
-	@CacheEvict(cacheNames = { "videos", "images" }, allEntries = true)
+	@CacheEvict(cacheNames = { "videos", "images", "videoVersions", "imageVersions", "articleETags" }, allEntries = true)
 	public void cacheClear() {
-		/* annotation driven */
+		/* eviction annotation driven */
+		assetPayloads.clear();
 	}
 
 }
@@ -0,0 +1,103 @@
+package telegraph.articles.implementation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Class CoAccessGraph.
+ *
+ * Counts, for each article, how often each other article was accessed shortly
+ * after it. The graph is bounded: it keeps the most recently accessed
+ * articles only, and for each of them a fixed number of successors, the
+ * least counted successor giving its place to a new one.
+ */
+final class CoAccessGraph {
+
+	/** The maximum number of successors kept per article. */
+	private final int maxSuccessors;
+
+	/** The successor counts, by article, in access order. */
+	private final LinkedHashMap<String, Map<String, Integer>> successors;
+
+	/**
+	 * Instantiates a new co-access graph.
+	 *
+	 * @param maxArticles
+	 *            the maximum number of articles kept
+	 * @param maxSuccessors
+	 *            the maximum number of successors kept per article
+	 */
+	CoAccessGraph(int maxArticles, int maxSuccessors) {
+		this.maxSuccessors = maxSuccessors;
+		this.successors = new LinkedHashMap<String, Map<String, Integer>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, Integer>> eldest) {
+				return size() > maxArticles;
+			}
+
+		};
+	}
+
+	/**
+	 * Records an access to an article following an access to another.
+	 *
+	 * @param from
+	 *            the article accessed first
+	 * @param to
+	 *            the article accessed next
+	 */
+	synchronized void record(String from, String to) {
+
+		Map<String, Integer> counts = successors.computeIfAbsent(from, k -> new HashMap<>());
+		Integer count = counts.get(to);
+		if (count == null && counts.size() >= maxSuccessors) {
+			String least = Collections.min(counts.entrySet(), Map.Entry.comparingByValue()).getKey();
+			/* the newcomer takes over the count it replaces, so it is not evicted right away */
+			count = counts.remove(least);
+		}
+		counts.put(to, count == null ? 1 : count + 1);
+
+	}
+
+	/**
+	 * Gets the most likely next articles.
+	 *
+	 * @param from
+	 *            the article accessed
+	 * @param limit
+	 *            the maximum number of articles
+	 * @return the next articles, most frequent first
+	 */
+	synchronized List<String> next(String from, int limit) {
+
+		Map<String, Integer> counts = successors.get(from);
+		if (counts == null) {
+			return Collections.emptyList();
+		}
+		List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+		entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+		List<String> next = new ArrayList<>(Math.min(limit, entries.size()));
+		for (int i = 0; i < entries.size() && i < limit; i++) {
+			next.add(entries.get(i).getKey());
+		}
+		return next;
+
+	}
+
+	/**
+	 * Gets the number of articles kept.
+	 *
+	 * @return the articles
+	 */
+	synchronized int size() {
+		return successors.size();
+	}
+
+}
@@ -0,0 +1,139 @@
+package telegraph.articles.implementation;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The Class EnrichmentScope.
+ *
+ * Runs the stages of a single enrichment and cancels the ones still pending
+ * when the enrichment ends early: when the future returned to the caller is
+ * cancelled, or when a stage fails, so that the remaining fetches of the
+ * article stop instead of running to no purpose. Cancelling a stage
+ * interrupts its thread, which stops waiting on the downstream call; the call
+ * itself is cancelled by {@link InFlightFetches} once nobody waits on it.
+ *
+ * The enrichment fails with the first stage failure, rather than with the
+ * cancellation of a sibling stage. A stage the executor rejects, its queue
+ * being full, fails at once with the {@link RejectedExecutionException}.
+ */
+final class EnrichmentScope {
+
+	/** The executor running the stages. */
+	private final ExecutorService executor;
+
+	/** The cancellations of the stages submitted. */
+	private final Queue<Runnable> cancellations = new ConcurrentLinkedQueue<>();
+
+	/** The first stage failure. */
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	/** Whether the enrichment has been cancelled. */
+	private volatile boolean cancelled;
+
+	/**
+	 * Instantiates a new enrichment scope.
+	 *
+	 * @param executor
+	 *            the executor running the stages
+	 */
+	EnrichmentScope(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs a stage of the enrichment.
+	 *
+	 * @param <T>
+	 *            the stage result type
+	 * @param stage
+	 *            the stage
+	 * @return the stage result, cancelled if the enrichment is, failed if the
+	 *         executor rejected the stage
+	 */
+	<T> CompletableFuture<T> supplyAsync(Supplier<T> stage) {
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		final Future<?> task;
+		try {
+			task = executor.submit(() -> {
+				try {
+					result.complete(stage.get());
+				} catch (Throwable t) {
+					result.completeExceptionally(t);
+					fail(t);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+			fail(e);
+			return result;
+		}
+		cancellations.add(() -> {
+			if (!result.isDone()) {
+				task.cancel(true);
+				result.cancel(false);
+			}
+		});
+		if (cancelled) {
+			cancel();
+		}
+		return result;
+
+	}
+
+	/**
+	 * Binds the outcome of the enrichment to this scope.
+	 *
+	 * @param <T>
+	 *            the result type
+	 * @param enrichment
+	 *            the composed stages
+	 * @return the future to hand to the caller: cancelling it cancels the
+	 *         stages in progress
+	 */
+	<T> CompletableFuture<T> bind(CompletableFuture<T> enrichment) {
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		enrichment.whenComplete((value, t) -> {
+			if (t == null) {
+				result.complete(value);
+			} else {
+				Throwable first = failure.get();
+				result.completeExceptionally(first == null ? t : new CompletionException(first));
+			}
+		});
+		result.whenComplete((value, t) -> {
+			if (t != null) {
+				cancel();
+			}
+		});
+		return result;
+
+	}
+
+	/**
+	 * Cancels the stages still pending.
+	 */
+	void cancel() {
+		cancelled = true;
+		Runnable cancellation;
+		while ((cancellation = cancellations.poll()) != null) {
+			cancellation.run();
+		}
+	}
+
+	private void fail(Throwable t) {
+		if (!cancelled && failure.compareAndSet(null, t)) {
+			cancel();
+		}
+	}
+
+}
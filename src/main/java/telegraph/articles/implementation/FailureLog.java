@@ -0,0 +1,133 @@
+package telegraph.articles.implementation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import telegraph.articles.tracing.Outcome;
+
+/**
+ * The Class FailureLog.
+ * 
+ * Counts the failed enrichments by outcome and service, and logs them without
+ * letting the logging become the bottleneck during an incident: at most
+ * enrichment.failures.logsPerSecond lines per second, without stack trace,
+ * each reporting how many failures were not logged since the previous one.
+ * One failure every enrichment.failures.stackTraceSampling is logged with its
+ * stack trace at DEBUG level.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "telegraph:type=Enrichment,name=failures", description = "Failed enrichments")
+public class FailureLog {
+
+	@Value("${enrichment.failures.logsPerSecond}")
+	private int logsPerSecond;
+
+	@Value("${enrichment.failures.stackTraceSampling}")
+	private int stackTraceSampling;
+
+	/** The failure counters, by outcome and service. */
+	private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	/** The failures recorded, for sampling. */
+	private final AtomicLong failures = new AtomicLong();
+
+	/**
+	 * The current logging window: its second in the high 32 bits, the lines
+	 * logged in it in the low ones, updated together.
+	 */
+	private final AtomicLong window = new AtomicLong();
+
+	/** The failures not logged since the last logged line. */
+	private final LongAdder suppressed = new LongAdder();
+
+	/**
+	 * Records a failed enrichment.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param t
+	 *            the failure
+	 */
+	public void record(String articleId, Throwable t) {
+
+		final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+		counters.computeIfAbsent(key(cause), k -> new LongAdder()).increment();
+		final long failure = failures.incrementAndGet();
+
+		if (stackTraceSampling > 0 && failure % stackTraceSampling == 0 && log.isDebugEnabled()) {
+			log.debug("Sampled failure of article " + articleId, cause);
+		}
+		if (acquireLogPermit()) {
+			long notLogged = suppressed.sumThenReset();
+			log.error("Enrichment of article {} failed: {}{}", articleId, describe(cause),
+					notLogged == 0 ? "" : " (" + notLogged + " more failures not logged)");
+		} else {
+			suppressed.increment();
+		}
+
+	}
+
+	/**
+	 * Gets the failure counters.
+	 *
+	 * @return the counts by outcome and service, e.g. "timeout.videos"
+	 */
+	@ManagedAttribute(description = "Failed enrichments by outcome and service")
+	public Map<String, Long> getFailureCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		counters.forEach((key, counter) -> counts.put(key, counter.sum()));
+		return counts;
+	}
+
+	/**
+	 * Gets the number of failed enrichments.
+	 *
+	 * @return the failures
+	 */
+	@ManagedAttribute(description = "Failed enrichments")
+	public long getFailures() {
+		return failures.get();
+	}
+
+	private boolean acquireLogPermit() {
+		final long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		while (true) {
+			final long current = window.get();
+			final long logged = current >> 32 == second ? (int) current : 0;
+			if (logged >= logsPerSecond) {
+				return false;
+			}
+			if (window.compareAndSet(current, (second << 32) | (logged + 1))) {
+				return true;
+			}
+		}
+	}
+
+	private static String key(Throwable cause) {
+		String service = null;
+		if (cause instanceof ServiceTimeoutException) {
+			service = ((ServiceTimeoutException) cause).getService();
+		} else if (cause instanceof ServiceException) {
+			service = ((ServiceException) cause).getService();
+		}
+		return Outcome.of(cause) + "." + (service == null ? "unknown" : service);
+	}
+
+	private static String describe(Throwable cause) {
+		return cause.getCause() == null ? cause.toString() : cause + " caused by " + cause.getCause();
+	}
+
+}
@@ -0,0 +1,187 @@
+package telegraph.articles.implementation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The Class InFlightFetches.
+ *
+ * Shares the downstream calls in progress between the callers asking for the
+ * same key: the first caller starts the call, the following ones wait on the
+ * same future. The call is cancelled when its last caller stops waiting
+ * before the answer, e.g. because its enrichment was cancelled, so a caller
+ * giving up never cancels a call other callers are still waiting on.
+ *
+ * The first caller registers the fetch before starting the call, outside of
+ * any lock of the map; the following ones wait for the call to be started,
+ * then for its answer, within the same timeout.
+ *
+ * The caller starting a call reports its latency to the
+ * {@link ServiceTimeouts}; the callers joining it would report a part of it.
+ *
+ * @param <T>
+ *            the answer type
+ */
+final class InFlightFetches<T> {
+
+	/** The service name. */
+	private final String service;
+
+	/** The calls in progress, by key. */
+	private final ConcurrentMap<String, Fetch<T>> fetches = new ConcurrentHashMap<>();
+
+	/**
+	 * Instantiates new in-flight fetches.
+	 *
+	 * @param service
+	 *            the service name
+	 */
+	InFlightFetches(String service) {
+		this.service = service;
+	}
+
+	/**
+	 * Awaits the answer of the call in progress for the key, starting it if
+	 * there is none.
+	 *
+	 * @param key
+	 *            the key
+	 * @param call
+	 *            starts the downstream call
+	 * @param timeouts
+	 *            the service timeouts, given the latency of the call when this
+	 *            caller started it
+	 * @return the answer
+	 * @throws ServiceTimeoutException
+	 *             if the service did not answer in time
+	 * @throws ServiceException
+	 *             if the service failed or the wait was interrupted
+	 */
+	T await(String key, Supplier<Future<T>> call, ServiceTimeouts timeouts) {
+
+		final long timeout = timeouts.get(service);
+		final long started = System.nanoTime();
+		Fetch<T> fetch;
+		boolean starter;
+		do {
+			fetch = fetches.get(key);
+			starter = false;
+			if (fetch == null) {
+				final Fetch<T> registered = new Fetch<>();
+				fetch = fetches.putIfAbsent(key, registered);
+				if (fetch == null) {
+					fetch = registered;
+					starter = true;
+				}
+			}
+		} while (!fetch.join(fetches, key));
+
+		try {
+			if (starter) {
+				fetch.start(call);
+			}
+			Future<T> future = ServiceCalls.await(fetch.call, timeout, service);
+			T answer = ServiceCalls.await(future,
+					Math.max(0, timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)), service);
+			if (starter) {
+				timeouts.record(service, System.nanoTime() - started);
+			}
+			return answer;
+		} catch (ServiceTimeoutException e) {
+			if (starter) {
+				timeouts.record(service, System.nanoTime() - started);
+			}
+			throw e;
+		} finally {
+			fetch.leave(fetches, key);
+		}
+
+	}
+
+	/**
+	 * Gets the service name.
+	 *
+	 * @return the service
+	 */
+	String getService() {
+		return service;
+	}
+
+	/**
+	 * Gets the number of calls in progress.
+	 *
+	 * @return the calls
+	 */
+	int size() {
+		return fetches.size();
+	}
+
+	/**
+	 * Gets the number of callers waiting on the call in progress for a key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the callers, 0 if there is no call in progress
+	 */
+	int waiters(String key) {
+		Fetch<T> fetch = fetches.get(key);
+		return fetch == null ? 0 : fetch.waiters();
+	}
+
+	/**
+	 * A downstream call and the number of callers waiting on it.
+	 */
+	private static final class Fetch<T> {
+
+		/** Completed with the downstream call once started. */
+		private final CompletableFuture<Future<T>> call = new CompletableFuture<>();
+		private int waiters;
+		private boolean closed;
+
+		/**
+		 * Starts the downstream call. The starter is one of the waiters, so
+		 * the fetch is not closed before.
+		 */
+		void start(Supplier<Future<T>> downstream) {
+			try {
+				call.complete(downstream.get());
+			} catch (RuntimeException e) {
+				call.completeExceptionally(e);
+				throw e;
+			}
+		}
+
+		synchronized int waiters() {
+			return waiters;
+		}
+
+		synchronized boolean join(ConcurrentMap<String, Fetch<T>> fetches, String key) {
+			if (closed) {
+				fetches.remove(key, this);
+				return false;
+			}
+			waiters++;
+			return true;
+		}
+
+		synchronized void leave(ConcurrentMap<String, Fetch<T>> fetches, String key) {
+			if (--waiters > 0) {
+				return;
+			}
+			closed = true;
+			fetches.remove(key, this);
+			if (call.isDone() && !call.isCompletedExceptionally()) {
+				Future<T> future = call.join();
+				if (!future.isDone()) {
+					future.cancel(true);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,170 @@
+package telegraph.articles.implementation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * The Class LatencyWindow.
+ *
+ * Histogram of the latencies observed over a sliding window, made of a ring
+ * of slices: a slice is reset when the window moves past it. The latencies
+ * are counted in logarithmic buckets, exact below 64 microseconds and
+ * within 1/32 above, so that the histogram has a fixed, small size whatever
+ * the range of the latencies.
+ */
+final class LatencyWindow {
+
+	/** The latencies counted exactly, in microseconds. */
+	private static final int LINEAR = 64;
+
+	/** The buckets per power of two above the linear range. */
+	private static final int SUB_BUCKETS = 32;
+
+	/** The largest latency counted, in microseconds: about 18 minutes. */
+	private static final long MAX = (1L << 30) - 1;
+
+	private static final int BUCKETS = index(MAX) + 1;
+
+	/** The slices, in a ring. */
+	private final Slice[] slices;
+
+	/** The duration of a slice, in nanoseconds. */
+	private final long sliceNanos;
+
+	/** The clock, in nanoseconds. */
+	private final LongSupplier clock;
+
+	/**
+	 * Instantiates a new latency window.
+	 *
+	 * @param slices
+	 *            the number of slices in the window
+	 * @param sliceNanos
+	 *            the duration of a slice in nanoseconds
+	 * @param clock
+	 *            the clock in nanoseconds
+	 */
+	LatencyWindow(int slices, long sliceNanos, LongSupplier clock) {
+		this.slices = new Slice[slices];
+		for (int i = 0; i < slices; i++) {
+			this.slices[i] = new Slice();
+		}
+		this.sliceNanos = sliceNanos;
+		this.clock = clock;
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param micros
+	 *            the latency in microseconds
+	 */
+	void record(long micros) {
+
+		final long epoch = Math.floorDiv(clock.getAsLong(), sliceNanos);
+		final Slice slice = slices[(int) Math.floorMod(epoch, (long) slices.length)];
+		if (slice.epoch != epoch) {
+			synchronized (slice) {
+				if (slice.epoch != epoch) {
+					for (int i = 0; i < BUCKETS; i++) {
+						slice.counts.set(i, 0);
+					}
+					slice.epoch = epoch;
+				}
+			}
+		}
+		slice.counts.incrementAndGet(index(Math.max(0, Math.min(micros, MAX))));
+
+	}
+
+	/**
+	 * Gets the number of latencies in the window.
+	 *
+	 * @return the count
+	 */
+	long count() {
+		long count = 0;
+		for (long bucket : merge()) {
+			count += bucket;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets a percentile of the latencies in the window.
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, in
+	 *         microseconds, or 0 if the window is empty
+	 */
+	long percentile(double percentile) {
+
+		final long[] merged = merge();
+		long count = 0;
+		for (long bucket : merged) {
+			count += bucket;
+		}
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < merged.length; i++) {
+			seen += merged[i];
+			if (seen >= rank) {
+				return upperBound(i);
+			}
+		}
+		return MAX;
+
+	}
+
+	/**
+	 * Sums the slices still in the window.
+	 */
+	private long[] merge() {
+		final long current = Math.floorDiv(clock.getAsLong(), sliceNanos);
+		final long[] merged = new long[BUCKETS];
+		for (Slice slice : slices) {
+			final long epoch = slice.epoch;
+			if (epoch > current - slices.length && epoch <= current) {
+				for (int i = 0; i < BUCKETS; i++) {
+					merged[i] += slice.counts.get(i);
+				}
+			}
+		}
+		return merged;
+	}
+
+	private static int index(long micros) {
+		if (micros < LINEAR) {
+			return (int) micros;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		final int shift = exponent - Integer.numberOfTrailingZeros(SUB_BUCKETS);
+		return LINEAR + (exponent - Integer.numberOfTrailingZeros(LINEAR)) * SUB_BUCKETS
+				+ (int) (micros >> shift) - SUB_BUCKETS;
+	}
+
+	private static long upperBound(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		final int exponent = (index - LINEAR) / SUB_BUCKETS + Integer.numberOfTrailingZeros(LINEAR);
+		final int shift = exponent - Integer.numberOfTrailingZeros(SUB_BUCKETS);
+		final long sub = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+
+	/**
+	 * The counts of one slice of the window.
+	 */
+	private static final class Slice {
+
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		private volatile long epoch = Long.MIN_VALUE;
+
+	}
+
+}
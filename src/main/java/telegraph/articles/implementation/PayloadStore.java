@@ -0,0 +1,183 @@
+package telegraph.articles.implementation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Class PayloadStore.
+ *
+ * Content-addressed store of the payloads held by the entries of one cache.
+ * Entries whose payloads have the same content, whatever their key, share a
+ * single payload instance, counted by the number of entries referring to it.
+ * A payload leaves the store when its last entry is released.
+ *
+ * The payloads are addressed by the hash of their content, the string hash,
+ * and told apart by their content on collision. A cryptographic digest
+ * would cost more heap per payload than most captions take.
+ *
+ * Sizes are the estimated heap retained by the payload strings.
+ *
+ * A single lock guards the store. It is only taken when an asset is loaded
+ * into its cache or leaves it, after a downstream call of milliseconds, and
+ * held for a few map operations: the hash of the payload, the costly part
+ * for a new string, is computed before taking it (see PayloadContention).
+ */
+final class PayloadStore {
+
+	/** The shared payloads, by content. */
+	private final Map<String, Payload> payloads = new HashMap<>();
+
+	/** The payload of each cache entry, by cache key. */
+	private final Map<String, Payload> entries = new HashMap<>();
+
+	/** The retained size of the payloads, once per entry. */
+	private long logicalBytes;
+
+	/** The retained size of the payloads, once per shared payload. */
+	private long storedBytes;
+
+	/**
+	 * Records the payload of a cache entry.
+	 *
+	 * @param key
+	 *            the cache key
+	 * @param content
+	 *            the payload received
+	 * @return the shared payload with the same content
+	 */
+	String acquire(String key, String content) {
+		if (content != null) {
+			/* cached by the string for the lookups under the lock */
+			content.hashCode();
+		}
+		return share(key, content);
+	}
+
+	private synchronized String share(String key, String content) {
+
+		if (content == null) {
+			release(key);
+			return null;
+		}
+		Payload payload = entries.get(key);
+		if (payload != null) {
+			if (payload.content.equals(content)) {
+				return payload.content;
+			}
+			release(key);
+		}
+		payload = payloads.get(content);
+		if (payload == null) {
+			payload = new Payload(content);
+			payloads.put(content, payload);
+			storedBytes += payload.size();
+		}
+		payload.references++;
+		entries.put(key, payload);
+		logicalBytes += payload.size();
+		return payload.content;
+
+	}
+
+	/**
+	 * Releases the payload of a cache entry, when the entry is evicted,
+	 * expires or is removed.
+	 *
+	 * @param key
+	 *            the cache key
+	 */
+	synchronized void release(String key) {
+
+		final Payload payload = entries.remove(key);
+		if (payload == null) {
+			return;
+		}
+		logicalBytes -= payload.size();
+		if (--payload.references == 0) {
+			payloads.remove(payload.content);
+			storedBytes -= payload.size();
+		}
+
+	}
+
+	/**
+	 * Releases all the payloads, when the cache is cleared.
+	 */
+	synchronized void clear() {
+		payloads.clear();
+		entries.clear();
+		logicalBytes = 0;
+		storedBytes = 0;
+	}
+
+	/**
+	 * Gets the number of entries holding a payload.
+	 *
+	 * @return the entries
+	 */
+	synchronized int getEntries() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the number of distinct payloads.
+	 *
+	 * @return the payloads
+	 */
+	synchronized int getPayloads() {
+		return payloads.size();
+	}
+
+	/**
+	 * Gets the size the payloads would take without deduplication.
+	 *
+	 * @return the bytes
+	 */
+	synchronized long getLogicalBytes() {
+		return logicalBytes;
+	}
+
+	/**
+	 * Gets the size the shared payloads take.
+	 *
+	 * @return the bytes
+	 */
+	synchronized long getStoredBytes() {
+		return storedBytes;
+	}
+
+	/**
+	 * Estimates the heap retained by a string: the string and its character
+	 * array, with compressed references and 8 byte alignment.
+	 *
+	 * @param content
+	 *            the string
+	 * @return the bytes
+	 */
+	static long retainedSize(String content) {
+		return 24 + align(16 + 2L * content.length());
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * A shared payload and the number of entries referring to it.
+	 */
+	private static final class Payload {
+
+		private final String content;
+		private int references;
+
+		Payload(String content) {
+			this.content = content;
+		}
+
+		long size() {
+			return retainedSize(content);
+		}
+
+	}
+
+}
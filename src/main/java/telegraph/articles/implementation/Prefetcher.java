@@ -0,0 +1,358 @@
+package telegraph.articles.implementation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import telegraph.articles.models.ArticleReference;
+
+/**
+ * The Class Prefetcher.
+ *
+ * Learns from the stream of served articles which articles are accessed
+ * shortly after which (each served article is paired with the
+ * prefetch.window articles served before it) and, after serving an article,
+ * loads the assets of its prefetch.fanout most likely successors into the
+ * caches, so that their enrichment finds them warm.
+ *
+ * Prefetching only uses spare capacity: a few low priority threads
+ * (prefetch.threads) with a short queue (prefetch.queue), at most
+ * prefetch.perSecond prefetches per second; anything beyond is dropped. The
+ * graph is updated, and the prefetches decided, by a single low priority
+ * thread with a queue of prefetch.graph.queue served articles, off the
+ * completion of the enrichments; served articles beyond are not recorded.
+ *
+ * A served article counts as a hit only if its prefetch had completed
+ * successfully: a prefetch still in progress or failed spared nothing.
+ *
+ * Enabled by prefetch.enabled=true.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "prefetch.enabled", havingValue = "true")
+@ManagedResource(objectName = "telegraph:type=Enrichment,name=prefetch", description = "Predictive prefetching")
+public class Prefetcher {
+
+	@Value("${prefetch.window}")
+	private int window;
+
+	@Value("${prefetch.fanout}")
+	private int fanout;
+
+	@Value("${prefetch.graph.articles}")
+	private int maxArticles;
+
+	@Value("${prefetch.graph.successors}")
+	private int maxSuccessors;
+
+	@Value("${prefetch.graph.queue}")
+	private int graphQueue;
+
+	@Value("${prefetch.threads}")
+	private int threads;
+
+	@Value("${prefetch.queue}")
+	private int queue;
+
+	@Value("${prefetch.perSecond}")
+	private int perSecond;
+
+	/** Looks up the article references, shared with the enrichments. */
+	@Autowired
+	ArticleReferences articleReferences;
+
+	@Autowired
+	CacheableAssetsServiceClient casheableAssetsServiceClient;
+
+	/** The co-access graph. */
+	private CoAccessGraph graph;
+
+	/** The last articles served, most recent at position - 1, recorder thread only. */
+	private String[] recent;
+
+	private int position;
+
+	/**
+	 * The articles prefetched and not served since, bounded: true once the
+	 * prefetch has completed, false while in progress.
+	 */
+	private Map<String, Boolean> pending;
+
+	/** Runs the prefetches. */
+	private ThreadPoolExecutor executor;
+
+	/** Records the served articles in the graph and starts the prefetches. */
+	private ThreadPoolExecutor recorder;
+
+	/**
+	 * The current budget window: its second in the high 32 bits, the
+	 * prefetches started in it in the low ones, updated together.
+	 */
+	private final AtomicLong budgetWindow = new AtomicLong();
+
+	private final LongAdder served = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder prefetched = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder unrecorded = new LongAdder();
+
+	@PostConstruct
+	void start() {
+		graph = new CoAccessGraph(maxArticles, maxSuccessors);
+		recent = new String[window];
+		pending = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > maxArticles;
+			}
+
+		});
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("prefetch-");
+		threadFactory.setDaemon(true);
+		threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue), threadFactory);
+		CustomizableThreadFactory recorderThreadFactory = new CustomizableThreadFactory("prefetch-graph-");
+		recorderThreadFactory.setDaemon(true);
+		recorderThreadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+		recorder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(graphQueue),
+				recorderThreadFactory);
+	}
+
+	@PreDestroy
+	void stop() {
+		recorder.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Records a served article and prefetches its likely successors, in the
+	 * background.
+	 *
+	 * @param articleId
+	 *            the article id
+	 */
+	public void served(String articleId) {
+
+		served.increment();
+		if (Boolean.TRUE.equals(pending.remove(articleId))) {
+			hits.increment();
+		}
+		try {
+			recorder.execute(() -> record(articleId));
+		} catch (RejectedExecutionException e) {
+			unrecorded.increment();
+		}
+
+	}
+
+	/**
+	 * Records a served article in the graph and prefetches its likely
+	 * successors.
+	 *
+	 * @param articleId
+	 *            the article id
+	 */
+	private void record(String articleId) {
+
+		for (String previous : predecessors(articleId)) {
+			graph.record(previous, articleId);
+		}
+		for (String next : graph.next(articleId, fanout)) {
+			if (!next.equals(articleId) && !pending.containsKey(next)) {
+				prefetch(next);
+			}
+		}
+
+	}
+
+	/**
+	 * Gets the articles served before the given one, within the window, and
+	 * appends it.
+	 */
+	private List<String> predecessors(String articleId) {
+		List<String> predecessors = new ArrayList<>(window);
+		for (String previous : recent) {
+			if (previous != null && !previous.equals(articleId)) {
+				predecessors.add(previous);
+			}
+		}
+		recent[position] = articleId;
+		position = (position + 1) % recent.length;
+		return predecessors;
+	}
+
+	private void prefetch(String articleId) {
+
+		if (!acquireBudget()) {
+			dropped.increment();
+			return;
+		}
+		pending.put(articleId, Boolean.FALSE);
+		try {
+			executor.execute(() -> load(articleId));
+			prefetched.increment();
+		} catch (RejectedExecutionException e) {
+			pending.remove(articleId);
+			dropped.increment();
+		}
+
+	}
+
+	/**
+	 * Loads the reference of an article, joining an enrichment looking it up
+	 * if any, and its assets, through the caches.
+	 *
+	 * @param articleId
+	 *            the article id
+	 */
+	private void load(String articleId) {
+		try {
+			ArticleReference articleReference = articleReferences.get(articleId);
+			casheableAssetsServiceClient.getImageByIdCacheable(articleReference);
+			for (String videoId : articleReference.getVideoUrls()) {
+				casheableAssetsServiceClient.getVideoByIdCacheable(videoId);
+			}
+			/* unless served in the meantime */
+			pending.replace(articleId, Boolean.FALSE, Boolean.TRUE);
+		} catch (RuntimeException e) {
+			pending.remove(articleId, Boolean.FALSE);
+			failed.increment();
+			log.debug("Prefetch of article {} failed: {}", articleId, e.toString());
+		}
+	}
+
+	/**
+	 * Checks if the prefetch of an article has completed, and the article not
+	 * been served since.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @return true if prefetched
+	 */
+	boolean isPrefetched(String articleId) {
+		return Boolean.TRUE.equals(pending.get(articleId));
+	}
+
+	private boolean acquireBudget() {
+		final long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+		while (true) {
+			final long current = budgetWindow.get();
+			final long used = current >> 32 == second ? (int) current : 0;
+			if (used >= perSecond) {
+				return false;
+			}
+			if (budgetWindow.compareAndSet(current, (second << 32) | (used + 1))) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of articles served.
+	 *
+	 * @return the articles served
+	 */
+	@ManagedAttribute(description = "Articles served")
+	public long getServed() {
+		return served.sum();
+	}
+
+	/**
+	 * Gets the number of served articles that had been prefetched.
+	 *
+	 * @return the hits
+	 */
+	@ManagedAttribute(description = "Served articles whose prefetch had completed")
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of prefetches started.
+	 *
+	 * @return the prefetches
+	 */
+	@ManagedAttribute(description = "Prefetches started")
+	public long getPrefetched() {
+		return prefetched.sum();
+	}
+
+	/**
+	 * Gets the number of prefetches dropped for lack of budget.
+	 *
+	 * @return the dropped prefetches
+	 */
+	@ManagedAttribute(description = "Prefetches dropped for lack of budget")
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Gets the number of failed prefetches.
+	 *
+	 * @return the failed prefetches
+	 */
+	@ManagedAttribute(description = "Failed prefetches")
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Gets the number of served articles not recorded in the graph, the
+	 * recorder being behind.
+	 *
+	 * @return the articles not recorded
+	 */
+	@ManagedAttribute(description = "Served articles not recorded in the co-access graph")
+	public long getUnrecorded() {
+		return unrecorded.sum();
+	}
+
+	/**
+	 * Gets the share of served articles that had been prefetched.
+	 *
+	 * @return the hit rate
+	 */
+	@ManagedAttribute(description = "Share of served articles that had been prefetched")
+	public double getHitRate() {
+		long total = served.sum();
+		return total == 0 ? 0 : (double) hits.sum() / total;
+	}
+
+	/**
+	 * Gets the share of prefetches followed by an access to the article.
+	 *
+	 * @return the accuracy
+	 */
+	@ManagedAttribute(description = "Share of prefetched articles served afterwards")
+	public double getAccuracy() {
+		long total = prefetched.sum();
+		return total == 0 ? 0 : (double) hits.sum() / total;
+	}
+
+}
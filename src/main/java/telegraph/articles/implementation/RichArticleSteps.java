@@ -15,6 +15,8 @@ import telegraph.articles.models.Video;
  */
 public class RichArticleSteps extends RichArticle {
 
+	private static final long serialVersionUID = 8312245913427465720L;
+
 	/*
 	 * Can access only through builder interface
 	 * 
@@ -0,0 +1,127 @@
+package telegraph.articles.implementation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * The Class ServiceCalls.
+ * 
+ * Awaits the answers of the downstream services, turning their failures into
+ * the typed exceptions of the enrichment once, where they happen.
+ * 
+ * A timeout allocates no exception: the wait on a {@link CompletableFuture}
+ * is ended by a timer completing it with a marker, and the timeout is then
+ * reported by the preallocated {@link ServiceTimeoutException} of the
+ * service. Other futures are awaited with {@link Future#get(long, TimeUnit)},
+ * whose {@link TimeoutException} is replaced by the same exception.
+ */
+final class ServiceCalls {
+
+	static final String REFERENCE = "reference";
+	static final String IMAGES = "images";
+	static final String VIDEOS = "videos";
+
+	/** The timeout of each service, shared by all its timeouts. */
+	private static final Map<String, ServiceTimeoutException> TIMEOUTS;
+
+	static {
+		Map<String, ServiceTimeoutException> timeouts = new HashMap<>();
+		for (String service : new String[] { REFERENCE, IMAGES, VIDEOS }) {
+			timeouts.put(service, new ServiceTimeoutException(service));
+		}
+		TIMEOUTS = Collections.unmodifiableMap(timeouts);
+	}
+
+	/** Completes the timed out waits. */
+	private static final ScheduledThreadPoolExecutor TIMER;
+
+	static {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("service-timeouts-");
+		threadFactory.setDaemon(true);
+		TIMER = new ScheduledThreadPoolExecutor(1, threadFactory);
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+
+	/** Completes a wait that timed out. */
+	private static final Object TIMED_OUT = new Object();
+
+	private ServiceCalls() {
+	}
+
+	/**
+	 * Awaits a service answer.
+	 *
+	 * @param <T>
+	 *            the answer type
+	 * @param future
+	 *            the pending answer
+	 * @param timeout
+	 *            the timeout in milliseconds
+	 * @param service
+	 *            the service name
+	 * @return the answer
+	 * @throws ServiceTimeoutException
+	 *             if the service did not answer in time
+	 * @throws ServiceException
+	 *             if the service failed or the wait was interrupted
+	 */
+	static <T> T await(Future<T> future, long timeout, String service) {
+		try {
+			if (future instanceof CompletableFuture && !future.isDone()) {
+				awaitCompletion((CompletableFuture<?>) future, timeout, service);
+			}
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw timeout(service);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException(service, e);
+		} catch (ExecutionException e) {
+			throw new ServiceException(service, e);
+		}
+	}
+
+	/**
+	 * Waits for a future to complete, at most the timeout.
+	 *
+	 * @throws ServiceTimeoutException
+	 *             if the future did not complete in time
+	 */
+	private static void awaitCompletion(CompletableFuture<?> future, long timeout, String service)
+			throws InterruptedException, ExecutionException {
+		final CompletableFuture<Object> completion = new CompletableFuture<>();
+		future.whenComplete((answer, failure) -> completion.complete(future));
+		final ScheduledFuture<?> timer = TIMER.schedule(() -> completion.complete(TIMED_OUT), timeout,
+				TimeUnit.MILLISECONDS);
+		try {
+			if (completion.get() == TIMED_OUT) {
+				throw timeout(service);
+			}
+		} finally {
+			timer.cancel(false);
+		}
+	}
+
+	/**
+	 * Gets the timeout of a service.
+	 *
+	 * @param service
+	 *            the service name
+	 * @return the shared timeout of the service, a new one if unknown
+	 */
+	private static ServiceTimeoutException timeout(String service) {
+		ServiceTimeoutException timeout = TIMEOUTS.get(service);
+		return timeout == null ? new ServiceTimeoutException(service) : timeout;
+	}
+
+}
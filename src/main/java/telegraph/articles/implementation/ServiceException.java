@@ -1,15 +1,35 @@
 package telegraph.articles.implementation;
 
+/**
+ * The Class ServiceException.
+ * 
+ * Failure of a downstream service. The stack trace is not filled in: the
+ * failing call is identified by the service name, and the cause keeps the
+ * stack of the original failure.
+ */
 public class ServiceException extends RuntimeException {
 
 	private static final long serialVersionUID = -1157484263504527891L;
 
-	public ServiceException(String string, Exception e) {
-		super(string, e);
+	private final String service;
+
+	public ServiceException(String service, Exception e) {
+		super(service == null ? "failure" : service + " failure", e, false, false);
+		this.service = service;
 	}
 
 	public ServiceException(Exception e) {
-		super(e);
+		super(e == null ? null : e.toString(), e, false, false);
+		this.service = null;
+	}
+
+	/**
+	 * Gets the name of the failing service.
+	 *
+	 * @return the service, null if unknown
+	 */
+	public String getService() {
+		return service;
 	}
 
 }
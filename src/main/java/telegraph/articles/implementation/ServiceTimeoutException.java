@@ -2,6 +2,13 @@ package telegraph.articles.implementation;
 
 import java.util.concurrent.TimeoutException;
 
+/**
+ * The Class ServiceTimeoutException.
+ * 
+ * A downstream service did not answer within its timeout. As timeouts are the
+ * common failure during an incident, the stack trace is not filled in, and
+ * the service calls throw a single preallocated instance per service.
+ */
 public class ServiceTimeoutException extends RuntimeException {
 
 	/**
@@ -9,8 +16,28 @@ public class ServiceTimeoutException extends RuntimeException {
 	 */
 	private static final long serialVersionUID = 3011713453982629956L;
 
+	private final String service;
+
 	public ServiceTimeoutException(TimeoutException e) {
-		super(e);
+		this(null, e);
+	}
+
+	public ServiceTimeoutException(String service) {
+		this(service, null);
+	}
+
+	public ServiceTimeoutException(String service, TimeoutException e) {
+		super(service == null ? "timeout" : service + " timeout", e, false, false);
+		this.service = service;
+	}
+
+	/**
+	 * Gets the name of the service that timed out.
+	 *
+	 * @return the service, null if unknown
+	 */
+	public String getService() {
+		return service;
 	}
 
 }
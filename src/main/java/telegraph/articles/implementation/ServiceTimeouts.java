@@ -0,0 +1,354 @@
+package telegraph.articles.implementation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * The Class ServiceTimeouts.
+ *
+ * Holds the timeouts of the downstream services. By default each service has
+ * the fixed timeout services.&lt;service&gt;.timeout. With
+ * services.timeouts.adaptive=true the timeout follows the latencies observed
+ * over the last services.timeouts.window seconds: the
+ * services.timeouts.percentile percentile plus services.timeouts.headroom
+ * percent, bounded by services.&lt;service&gt;.timeout.floor and
+ * services.&lt;service&gt;.timeout.ceiling. The fixed timeout applies until
+ * services.timeouts.minSamples latencies have been observed.
+ *
+ * The latencies are those of the calls answered, and of the calls timed out
+ * counted at their timeout, so that a service slowing down raises its
+ * timeout rather than hiding behind it. The adaptive timeouts are refreshed
+ * every second. The current timeouts are exposed, and all the settings can
+ * be changed at runtime, over JMX.
+ */
+@Component
+@ManagedResource(objectName = "telegraph:type=Enrichment,name=timeouts", description = "Service timeouts")
+public class ServiceTimeouts {
+
+	@Value("${services.reference.timeout}")
+	private long referenceServiceTimeout;
+
+	@Value("${services.reference.timeout.floor}")
+	private long referenceServiceTimeoutFloor;
+
+	@Value("${services.reference.timeout.ceiling}")
+	private long referenceServiceTimeoutCeiling;
+
+	@Value("${services.images.timeout}")
+	private long imageServiceTimeout;
+
+	@Value("${services.images.timeout.floor}")
+	private long imageServiceTimeoutFloor;
+
+	@Value("${services.images.timeout.ceiling}")
+	private long imageServiceTimeoutCeiling;
+
+	@Value("${services.videos.timeout}")
+	private long videoServiceTimeout;
+
+	@Value("${services.videos.timeout.floor}")
+	private long videoServiceTimeoutFloor;
+
+	@Value("${services.videos.timeout.ceiling}")
+	private long videoServiceTimeoutCeiling;
+
+	@Value("${services.timeouts.adaptive}")
+	private volatile boolean adaptive;
+
+	@Value("${services.timeouts.percentile}")
+	private volatile double percentile;
+
+	@Value("${services.timeouts.headroom}")
+	private volatile double headroom;
+
+	@Value("${services.timeouts.window}")
+	private int window;
+
+	@Value("${services.timeouts.minSamples}")
+	private volatile long minSamples;
+
+	/** The clock, in nanoseconds. */
+	LongSupplier clock = System::nanoTime;
+
+	/** The timeouts, by service. */
+	private Map<String, Timeout> timeouts;
+
+	@PostConstruct
+	void start() {
+		Map<String, Timeout> timeouts = new LinkedHashMap<>();
+		timeouts.put(ServiceCalls.REFERENCE,
+				new Timeout(referenceServiceTimeout, referenceServiceTimeoutFloor, referenceServiceTimeoutCeiling));
+		timeouts.put(ServiceCalls.IMAGES,
+				new Timeout(imageServiceTimeout, imageServiceTimeoutFloor, imageServiceTimeoutCeiling));
+		timeouts.put(ServiceCalls.VIDEOS,
+				new Timeout(videoServiceTimeout, videoServiceTimeoutFloor, videoServiceTimeoutCeiling));
+		this.timeouts = Collections.unmodifiableMap(timeouts);
+	}
+
+	/**
+	 * Gets the current timeout of a service.
+	 *
+	 * @param service
+	 *            the service name
+	 * @return the timeout in milliseconds
+	 */
+	public long get(String service) {
+		final Timeout timeout = timeout(service);
+		if (!adaptive) {
+			return timeout.fixed;
+		}
+		final long now = clock.getAsLong();
+		final long refresh = timeout.nextRefresh.get();
+		if (now - refresh >= 0 && timeout.nextRefresh.compareAndSet(refresh, now + TimeUnit.SECONDS.toNanos(1))) {
+			timeout.current = adapt(timeout);
+		}
+		return timeout.current;
+	}
+
+	/**
+	 * Records the latency of a call answered by a service, or the timeout of
+	 * a call it did not answer in time.
+	 *
+	 * @param service
+	 *            the service name
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void record(String service, long nanos) {
+		timeout(service).latencies.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	/**
+	 * Computes the adaptive timeout of a service from its latencies.
+	 */
+	private long adapt(Timeout timeout) {
+		if (timeout.latencies.count() < minSamples) {
+			return timeout.fixed;
+		}
+		final double micros = timeout.latencies.percentile(percentile) * (1 + headroom / 100);
+		final long millis = (long) Math.ceil(micros / TimeUnit.MILLISECONDS.toMicros(1));
+		return Math.max(timeout.floor, Math.min(millis, timeout.ceiling));
+	}
+
+	/**
+	 * Refreshes the adaptive timeouts on their next use, after a change of
+	 * settings.
+	 */
+	private void refresh() {
+		final long now = clock.getAsLong();
+		for (Timeout timeout : timeouts.values()) {
+			timeout.nextRefresh.set(now);
+		}
+	}
+
+	private Timeout timeout(String service) {
+		final Timeout timeout = timeouts.get(service);
+		if (timeout == null) {
+			throw new IllegalArgumentException("Unknown service " + service);
+		}
+		return timeout;
+	}
+
+	/**
+	 * Gets the current timeouts.
+	 *
+	 * @return the timeouts in milliseconds, by service
+	 */
+	@ManagedAttribute(description = "Current timeouts by service (ms)")
+	public Map<String, Long> getTimeouts() {
+		Map<String, Long> current = new LinkedHashMap<>();
+		for (String service : timeouts.keySet()) {
+			current.put(service, get(service));
+		}
+		return current;
+	}
+
+	/**
+	 * Gets the latency percentile observed over the window.
+	 *
+	 * @return the latencies in milliseconds, by service
+	 */
+	@ManagedAttribute(description = "Latency percentile observed over the window by service (ms)")
+	public Map<String, Double> getLatencies() {
+		Map<String, Double> latencies = new LinkedHashMap<>();
+		for (Map.Entry<String, Timeout> timeout : timeouts.entrySet()) {
+			latencies.put(timeout.getKey(), timeout.getValue().latencies.percentile(percentile) / 1000.0);
+		}
+		return latencies;
+	}
+
+	/**
+	 * Checks if the timeouts are adaptive.
+	 *
+	 * @return true if adaptive
+	 */
+	@ManagedAttribute(description = "Timeouts derived from the observed latencies")
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Sets whether the timeouts are adaptive.
+	 *
+	 * @param adaptive
+	 *            true for adaptive timeouts, false for the fixed ones
+	 */
+	@ManagedAttribute
+	public void setAdaptive(boolean adaptive) {
+		this.adaptive = adaptive;
+		refresh();
+	}
+
+	/**
+	 * Gets the percentile the adaptive timeouts are derived from.
+	 *
+	 * @return the percentile
+	 */
+	@ManagedAttribute(description = "Latency percentile the adaptive timeouts are derived from")
+	public double getPercentile() {
+		return percentile;
+	}
+
+	/**
+	 * Sets the percentile the adaptive timeouts are derived from.
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 */
+	@ManagedAttribute
+	public void setPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile out of range: " + percentile);
+		}
+		this.percentile = percentile;
+		refresh();
+	}
+
+	/**
+	 * Gets the headroom added to the latency percentile.
+	 *
+	 * @return the headroom in percent
+	 */
+	@ManagedAttribute(description = "Headroom added to the latency percentile (%)")
+	public double getHeadroom() {
+		return headroom;
+	}
+
+	/**
+	 * Sets the headroom added to the latency percentile.
+	 *
+	 * @param headroom
+	 *            the headroom in percent
+	 */
+	@ManagedAttribute
+	public void setHeadroom(double headroom) {
+		if (headroom < 0) {
+			throw new IllegalArgumentException("Negative headroom: " + headroom);
+		}
+		this.headroom = headroom;
+		refresh();
+	}
+
+	/**
+	 * Gets the number of latencies needed before the timeouts adapt.
+	 *
+	 * @return the minimum samples
+	 */
+	@ManagedAttribute(description = "Latencies observed over the window before the timeouts adapt")
+	public long getMinSamples() {
+		return minSamples;
+	}
+
+	/**
+	 * Sets the number of latencies needed before the timeouts adapt.
+	 *
+	 * @param minSamples
+	 *            the minimum samples
+	 */
+	@ManagedAttribute
+	public void setMinSamples(long minSamples) {
+		this.minSamples = minSamples;
+		refresh();
+	}
+
+	/**
+	 * Sets the fixed timeout of a service, used when the timeouts are not
+	 * adaptive or too few latencies were observed.
+	 *
+	 * @param service
+	 *            the service name
+	 * @param timeout
+	 *            the timeout in milliseconds
+	 */
+	@ManagedOperation(description = "Sets the fixed timeout of a service")
+	@ManagedOperationParameters({
+			@ManagedOperationParameter(name = "service", description = "reference, images or videos"),
+			@ManagedOperationParameter(name = "timeout", description = "Timeout (ms)") })
+	public void setTimeout(String service, long timeout) {
+		timeout(service).fixed = timeout;
+		refresh();
+	}
+
+	/**
+	 * Sets the bounds of the adaptive timeout of a service.
+	 *
+	 * @param service
+	 *            the service name
+	 * @param floor
+	 *            the lowest timeout in milliseconds
+	 * @param ceiling
+	 *            the highest timeout in milliseconds
+	 */
+	@ManagedOperation(description = "Sets the bounds of the adaptive timeout of a service")
+	@ManagedOperationParameters({
+			@ManagedOperationParameter(name = "service", description = "reference, images or videos"),
+			@ManagedOperationParameter(name = "floor", description = "Lowest timeout (ms)"),
+			@ManagedOperationParameter(name = "ceiling", description = "Highest timeout (ms)") })
+	public void setBounds(String service, long floor, long ceiling) {
+		if (floor > ceiling) {
+			throw new IllegalArgumentException("Floor " + floor + " above ceiling " + ceiling);
+		}
+		final Timeout timeout = timeout(service);
+		timeout.floor = floor;
+		timeout.ceiling = ceiling;
+		refresh();
+	}
+
+	/**
+	 * The timeout of one service and the latencies it is derived from.
+	 */
+	private final class Timeout {
+
+		private volatile long fixed;
+		private volatile long floor;
+		private volatile long ceiling;
+		private volatile long current;
+		private final AtomicLong nextRefresh;
+		private final LatencyWindow latencies;
+
+		Timeout(long fixed, long floor, long ceiling) {
+			this.fixed = fixed;
+			this.floor = floor;
+			this.ceiling = ceiling;
+			this.current = fixed;
+			this.nextRefresh = new AtomicLong(clock.getAsLong());
+			this.latencies = new LatencyWindow(window, TimeUnit.SECONDS.toNanos(1), () -> clock.getAsLong());
+		}
+
+	}
+
+}
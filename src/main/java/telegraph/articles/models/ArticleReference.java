@@ -12,7 +12,7 @@ public class ArticleReference {
 		this.id = id;
 		this.name = name;
 		this.heroImageUrl = heroImageUrl;
-		this.videoUrls = videoUrls;
+		this.videoUrls = ImmutableArrayList.copyOf(videoUrls);
 	}
 
 	public String getId() {
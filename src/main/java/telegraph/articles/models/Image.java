@@ -1,6 +1,11 @@
 package telegraph.articles.models;
 
-public class Image {
+import java.io.Serializable;
+
+public class Image implements Serializable {
+
+	private static final long serialVersionUID = 6150939312780540316L;
+
 	private final String id;
 	private final String altText;
 
@@ -0,0 +1,69 @@
+package telegraph.articles.models;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The Class ImmutableArrayList.
+ * 
+ * Read-only list over an exactly sized array: a header and an array instead of
+ * the spare capacity of an ArrayList or the extra wrapper of an unmodifiable
+ * view.
+ *
+ * @param <E>
+ *            the element type
+ */
+final class ImmutableArrayList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 4420945286380771022L;
+
+	private final Object[] elements;
+
+	private ImmutableArrayList(Object[] elements) {
+		this.elements = elements;
+	}
+
+	/**
+	 * Copies a collection, unless it is already immutable.
+	 *
+	 * @param <E>
+	 *            the element type
+	 * @param collection
+	 *            the collection, may be null
+	 * @return the immutable list, null for a null collection
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> ImmutableArrayList<E> copyOf(Collection<? extends E> collection) {
+		if (collection == null || collection instanceof ImmutableArrayList) {
+			return (ImmutableArrayList<E>) collection;
+		}
+		return new ImmutableArrayList<>(collection.toArray());
+	}
+
+	/**
+	 * Wraps an array, which must not be modified afterwards.
+	 *
+	 * @param <E>
+	 *            the element type
+	 * @param elements
+	 *            the elements
+	 * @return the immutable list
+	 */
+	static <E> ImmutableArrayList<E> wrap(E[] elements) {
+		return new ImmutableArrayList<>(elements);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		return (E) elements[index];
+	}
+
+	@Override
+	public int size() {
+		return elements.length;
+	}
+
+}
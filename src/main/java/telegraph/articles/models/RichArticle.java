@@ -1,8 +1,11 @@
 package telegraph.articles.models;
 
+import java.io.Serializable;
 import java.util.Collection;
 
-public class RichArticle {
+public class RichArticle implements Serializable {
+
+	private static final long serialVersionUID = -1540873621985107542L;
 
 	private final String id;
 	private final String name;
@@ -13,7 +16,7 @@ public class RichArticle {
 		this.id = id;
 		this.name = name;
 		this.heroImage = heroImage;
-		this.videos = videos;
+		this.videos = ImmutableArrayList.copyOf(videos);
 	}
 
 	public String getId() {
@@ -0,0 +1,64 @@
+package telegraph.articles.models;
+
+/**
+ * The Class VersionedAsset.
+ * 
+ * Answer of a conditional asset fetch: either the asset with its current
+ * version (e.g. an ETag), or a "not modified" mark when the version held by
+ * the caller is still current.
+ *
+ * @param <T>
+ *            the asset type
+ */
+public class VersionedAsset<T> {
+
+	private final T asset;
+	private final String version;
+	private final boolean modified;
+
+	private VersionedAsset(T asset, String version, boolean modified) {
+		this.asset = asset;
+		this.version = version;
+		this.modified = modified;
+	}
+
+	/**
+	 * Full answer, carrying the asset.
+	 *
+	 * @param <T>
+	 *            the asset type
+	 * @param asset
+	 *            the asset
+	 * @param version
+	 *            the asset version
+	 * @return the versioned asset
+	 */
+	public static <T> VersionedAsset<T> modified(T asset, String version) {
+		return new VersionedAsset<>(asset, version, true);
+	}
+
+	/**
+	 * "Not modified" answer, without the asset.
+	 *
+	 * @param <T>
+	 *            the asset type
+	 * @param version
+	 *            the asset version
+	 * @return the versioned asset
+	 */
+	public static <T> VersionedAsset<T> notModified(String version) {
+		return new VersionedAsset<>(null, version, false);
+	}
+
+	public T getAsset() {
+		return asset;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+}
@@ -1,6 +1,11 @@
 package telegraph.articles.models;
 
-public class Video {
+import java.io.Serializable;
+
+public class Video implements Serializable {
+
+	private static final long serialVersionUID = -3207418826312581733L;
+
 	private final String id;
 	private final String caption;
 
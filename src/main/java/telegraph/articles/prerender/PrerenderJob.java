@@ -0,0 +1,378 @@
+package telegraph.articles.prerender;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.ehcache.EhCacheCache;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.config.CacheConfiguration;
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.codec.ArticleCodec;
+import telegraph.articles.models.RichArticle;
+
+/**
+ * The Class PrerenderJob.
+ *
+ * Enriches every article listed in the prerender.input file (one id per
+ * line) into a {@link SegmentStore} in the prerender.output directory,
+ * encoded with the {@link ArticleCodec}. At most prerender.concurrency
+ * enrichments are in progress at a time; they go through the asset caches,
+ * so an asset shared by several articles is fetched once, the "videos" cache
+ * being grown to prerender.videoCacheEntries for the run.
+ *
+ * Every prerender.checkpointEvery articles, the store is checkpointed with
+ * the number of input lines fully processed and the lines beyond them
+ * already processed: a crashed run started again with the same input and
+ * output resumes from there, without processing any line twice. The articles that
+ * could not be enriched, encoded or stored, e.g. for an id too long for the
+ * index, are listed in failed.txt, to be run again; only an I/O error on
+ * the store stops the run.
+ * Throughput is logged every prerender.reportSeconds seconds.
+ *
+ * Enabled by setting prerender.input; run with
+ * --spring.main.web-environment=false for the application to exit once the
+ * job is done.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "prerender.input")
+public class PrerenderJob implements CommandLineRunner {
+
+	@Value("${prerender.input}")
+	private String input;
+
+	@Value("${prerender.output}")
+	private String output;
+
+	@Value("${prerender.concurrency}")
+	private int concurrency;
+
+	@Value("${prerender.checkpointEvery}")
+	private int checkpointEvery;
+
+	@Value("${prerender.reportSeconds}")
+	private int reportSeconds;
+
+	@Value("${prerender.videoCacheEntries}")
+	private long videoCacheEntries;
+
+	/** Article enricher. */
+	@Autowired
+	ArticleEnricher articleEnricher;
+
+	/** The cache manager, holding the asset caches. */
+	@Autowired(required = false)
+	CacheManager cacheManager;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.springframework.boot.CommandLineRunner#run(java.lang.String[])
+	 */
+	@Override
+	public void run(String... args) throws Exception {
+		growVideoCache();
+		run(Paths.get(input), Paths.get(output));
+	}
+
+	/**
+	 * Grows the "videos" cache to prerender.videoCacheEntries: sized for
+	 * serving, it would evict most shared videos before the next article
+	 * using them in a pass over the whole catalogue.
+	 */
+	private void growVideoCache() {
+		Cache videos = cacheManager == null ? null : cacheManager.getCache("videos");
+		if (videos instanceof EhCacheCache) {
+			CacheConfiguration configuration = ((EhCacheCache) videos).getNativeCache().getCacheConfiguration();
+			if (configuration.getMaxEntriesLocalHeap() < videoCacheEntries) {
+				configuration.setMaxEntriesLocalHeap(videoCacheEntries);
+			}
+		}
+	}
+
+	/**
+	 * Pre-renders the articles listed in a file.
+	 *
+	 * @param input
+	 *            the file of article ids
+	 * @param output
+	 *            the store directory
+	 * @return the progress at the end of the run
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the enrichments
+	 */
+	public Progress run(Path input, Path output) throws IOException, InterruptedException {
+
+		try (SegmentStore store = SegmentStore.open(output);
+				BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+
+			final Progress progress = new Progress(store.getResumeLine());
+			final Semaphore permits = new Semaphore(concurrency);
+			final AtomicReference<IOException> writeFailure = new AtomicReference<>();
+			log.info("Pre-rendering {} into {}, resuming after line {}", input, output, store.getResumeLine());
+
+			long line = 0;
+			long checkpointed = 0;
+			long reported = System.nanoTime();
+			String articleId;
+			while ((articleId = reader.readLine()) != null && writeFailure.get() == null) {
+
+				final long current = line++;
+				articleId = articleId.trim();
+				if (current < store.getResumeLine()) {
+					continue;
+				}
+				if (articleId.isEmpty() || store.isDone(current) || store.isRecovered(articleId)) {
+					progress.skipped.increment();
+					progress.processed(current, line);
+					continue;
+				}
+				if (!SegmentStore.isStorable(articleId)) {
+					log.warn("Article id of line {} too long to be stored", line);
+					synchronized (store) {
+						store.fail(articleId);
+					}
+					progress.failed.increment();
+					progress.processed(current, line);
+					continue;
+				}
+
+				permits.acquire();
+				progress.start(current, line);
+				final String id = articleId;
+				toCompletableFuture(articleEnricher.enrichArticleWithId(id)).whenComplete((richArticle, t) -> {
+					try {
+						/* written and completed at once with regard to the checkpoints */
+						synchronized (store) {
+							try {
+								final ByteBuffer encoded = t == null ? encode(id, richArticle) : null;
+								if (encoded != null) {
+									store.append(id, encoded);
+									progress.rendered.increment();
+								} else {
+									store.fail(id);
+									progress.failed.increment();
+								}
+							} finally {
+								progress.complete(current);
+							}
+						}
+					} catch (IOException | RuntimeException e) {
+						writeFailure.compareAndSet(null, e instanceof IOException ? (IOException) e
+								: new IOException("Pre-rendering of article " + id + " failed", e));
+					} finally {
+						permits.release();
+					}
+				});
+
+				if (progress.getCompleted() - checkpointed >= checkpointEvery) {
+					checkpointed = progress.getCompleted();
+					checkpoint(store, progress);
+				}
+				if (System.nanoTime() - reported >= TimeUnit.SECONDS.toNanos(reportSeconds)) {
+					reported = System.nanoTime();
+					log.info("{}", progress);
+				}
+
+			}
+
+			permits.acquire(concurrency);
+			if (writeFailure.get() != null) {
+				throw writeFailure.get();
+			}
+			checkpoint(store, progress);
+			log.info("Done: {}", progress);
+			return progress;
+
+		}
+
+	}
+
+	/**
+	 * Encodes an enriched article.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param richArticle
+	 *            the enriched article
+	 * @return the encoded article, or null if it cannot be encoded
+	 */
+	private static ByteBuffer encode(String articleId, RichArticle richArticle) {
+		try {
+			return ArticleCodec.encode(richArticle);
+		} catch (RuntimeException e) {
+			log.warn("Article {} could not be encoded: {}", articleId, e.toString());
+			return null;
+		}
+	}
+
+	private static void checkpoint(SegmentStore store, Progress progress) throws IOException {
+		synchronized (store) {
+			final long line = progress.getLowWaterMark();
+			store.checkpoint(line, progress.getDoneFrom(line));
+		}
+	}
+
+	/**
+	 * Gets the enrichment as a completable future, to be written once done
+	 * without a thread waiting on each.
+	 *
+	 * @param future
+	 *            the enrichment, a completion stage
+	 * @return the completable future
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> CompletableFuture<T> toCompletableFuture(Future<T> future) {
+		if (!(future instanceof CompletionStage)) {
+			throw new IllegalStateException("Enrichment not a CompletionStage: " + future.getClass().getName());
+		}
+		/* safe: a Future<T> that is a CompletionStage completes with the same T */
+		return ((CompletionStage<T>) future).toCompletableFuture();
+	}
+
+	/**
+	 * The progress of a run: the counts of articles, the throughput, the
+	 * number of input lines fully processed, below the first enrichment
+	 * still in progress, and the lines processed beyond it.
+	 */
+	public static final class Progress {
+
+		private final long started = System.nanoTime();
+
+		private final LongAdder rendered = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder skipped = new LongAdder();
+
+		/** The lines of the enrichments in progress. */
+		private final TreeSet<Long> inProgress = new TreeSet<>();
+
+		/** The lines processed, pruned below the lines fully processed. */
+		private final TreeSet<Long> done = new TreeSet<>();
+
+		/** The lines read. */
+		private long read;
+
+		private long completed;
+
+		Progress(long resumeLine) {
+			this.read = resumeLine;
+		}
+
+		synchronized void processed(long line, long lines) {
+			done.add(line);
+			read = lines;
+		}
+
+		synchronized void start(long line, long lines) {
+			inProgress.add(line);
+			read = lines;
+		}
+
+		synchronized void complete(long line) {
+			inProgress.remove(line);
+			done.add(line);
+			completed++;
+		}
+
+		synchronized long getCompleted() {
+			return completed;
+		}
+
+		/**
+		 * Gets the number of input lines fully processed.
+		 *
+		 * @return the lines
+		 */
+		public synchronized long getLowWaterMark() {
+			return inProgress.isEmpty() ? read : inProgress.first();
+		}
+
+		/**
+		 * Gets the lines processed from a line on, forgetting those before.
+		 *
+		 * @param line
+		 *            the number of input lines fully processed
+		 * @return the lines, from 0
+		 */
+		synchronized List<Long> getDoneFrom(long line) {
+			done.headSet(line).clear();
+			return new ArrayList<>(done);
+		}
+
+		/**
+		 * Gets the number of articles written.
+		 *
+		 * @return the articles
+		 */
+		public long getRendered() {
+			return rendered.sum();
+		}
+
+		/**
+		 * Gets the number of articles that could not be enriched.
+		 *
+		 * @return the articles
+		 */
+		public long getFailed() {
+			return failed.sum();
+		}
+
+		/**
+		 * Gets the number of blank lines and articles written by the crashed
+		 * run resumed.
+		 *
+		 * @return the articles
+		 */
+		public long getSkipped() {
+			return skipped.sum();
+		}
+
+		/**
+		 * Gets the throughput since the start of the run.
+		 *
+		 * @return the articles enriched per second, failed ones included
+		 */
+		public double getArticlesPerSecond() {
+			final long elapsed = System.nanoTime() - started;
+			return elapsed == 0 ? 0 : (rendered.sum() + failed.sum()) * 1e9 / elapsed;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format("%d articles rendered, %d failed, %d skipped, %.1f articles/s", getRendered(),
+					getFailed(), getSkipped(), getArticlesPerSecond());
+		}
+
+	}
+
+}
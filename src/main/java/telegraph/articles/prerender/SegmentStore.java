@@ -0,0 +1,500 @@
+package telegraph.articles.prerender;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * The Class SegmentStore.
+ *
+ * Local append-only store of pre-rendered articles, in a directory:
+ * <ul>
+ * <li>articles.seg, the segment: one record per article, its length, the
+ * CRC32 of its content and its content (the encoded article);</li>
+ * <li>articles.idx, the index: for each record, the article id, the offset
+ * of the record in the segment and the length of its content;</li>
+ * <li>failed.txt, the ids of the articles that could not be rendered, one
+ * per line;</li>
+ * <li>checkpoint, the number of input lines fully processed, the lines
+ * beyond them already processed out of order, and the lengths of the files
+ * at that point, replaced atomically.</li>
+ * </ul>
+ *
+ * The files are synced before each checkpoint. On opening, whatever follows
+ * the last checkpoint is checked: the records both complete and indexed are
+ * kept, the rest is truncated, so that a crashed run resumes from the
+ * checkpoint and skips both the lines processed out of order before it and
+ * the articles written since.
+ */
+public final class SegmentStore implements Closeable {
+
+	static final String SEGMENT = "articles.seg";
+	static final String INDEX = "articles.idx";
+	static final String FAILED = "failed.txt";
+	static final String CHECKPOINT = "checkpoint";
+
+	/** The length of the record header: length and CRC32. */
+	private static final int RECORD_HEADER = 8;
+
+	/** The longest article id in the index, in UTF-8 bytes. */
+	private static final int MAX_ID_BYTES = 0xFFFF;
+
+	private final Path directory;
+
+	private final FileOutputStream segmentFile;
+	private final DataOutputStream segment;
+	private final FileOutputStream indexFile;
+	private final DataOutputStream index;
+	private final FileOutputStream failedFile;
+	private final Writer failed;
+
+	private long segmentLength;
+	private long indexLength;
+	private long failedLength;
+
+	/** The input lines fully processed at the last checkpoint. */
+	private final long resumeLine;
+
+	/** The lines beyond them processed at the last checkpoint. */
+	private final Set<Long> doneLines;
+
+	/** The articles written since the last checkpoint, on opening. */
+	private final Set<String> recovered;
+
+	private int articles;
+
+	private SegmentStore(Path directory, long resumeLine, Set<Long> doneLines, Set<String> recovered,
+			long segmentLength, long indexLength, long failedLength) throws IOException {
+		this.directory = directory;
+		this.resumeLine = resumeLine;
+		this.doneLines = doneLines;
+		this.recovered = recovered;
+		this.segmentLength = segmentLength;
+		this.indexLength = indexLength;
+		this.failedLength = failedLength;
+		this.segmentFile = new FileOutputStream(directory.resolve(SEGMENT).toFile(), true);
+		this.segment = new DataOutputStream(new BufferedOutputStream(segmentFile, 1 << 16));
+		this.indexFile = new FileOutputStream(directory.resolve(INDEX).toFile(), true);
+		this.index = new DataOutputStream(new BufferedOutputStream(indexFile, 1 << 14));
+		this.failedFile = new FileOutputStream(directory.resolve(FAILED).toFile(), true);
+		this.failed = new OutputStreamWriter(new BufferedOutputStream(failedFile), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Opens the store in a directory, created if needed, recovering the
+	 * files from the last checkpoint.
+	 *
+	 * @param directory
+	 *            the directory
+	 * @return the store
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static SegmentStore open(Path directory) throws IOException {
+
+		Files.createDirectories(directory);
+		final Properties checkpoint = new Properties();
+		final Path checkpointPath = directory.resolve(CHECKPOINT);
+		if (Files.exists(checkpointPath)) {
+			try (InputStream in = Files.newInputStream(checkpointPath)) {
+				checkpoint.load(in);
+			}
+		}
+		final long resumeLine = Long.parseLong(checkpoint.getProperty("line", "0"));
+		long segmentLength = Long.parseLong(checkpoint.getProperty("segmentLength", "0"));
+		long indexLength = Long.parseLong(checkpoint.getProperty("indexLength", "0"));
+		final long failedLength = Long.parseLong(checkpoint.getProperty("failedLength", "0"));
+		final Set<Long> doneLines = new HashSet<>();
+		for (String done : checkpoint.getProperty("done", "").split(",")) {
+			if (!done.isEmpty()) {
+				doneLines.add(Long.valueOf(done));
+			}
+		}
+
+		final Set<String> recovered = new HashSet<>();
+		try (FileChannel segment = openChannel(directory.resolve(SEGMENT));
+				FileChannel index = openChannel(directory.resolve(INDEX));
+				FileChannel failed = openChannel(directory.resolve(FAILED))) {
+			if (segment.size() < segmentLength || index.size() < indexLength || failed.size() < failedLength) {
+				throw new IOException("Store in " + directory + " shorter than its checkpoint");
+			}
+			/* the stream does not own the channel: the index is truncated next */
+			final DataInputStream entries = new DataInputStream(new BufferedInputStream(
+					Channels.newInputStream(new PositionedReader(index, indexLength))));
+			while (true) {
+				final IndexEntry entry = IndexEntry.read(entries);
+				if (entry == null || entry.offset != segmentLength || !valid(segment, entry)) {
+					break;
+				}
+				recovered.add(entry.id);
+				segmentLength += RECORD_HEADER + entry.length;
+				indexLength += entry.size();
+			}
+			segment.truncate(segmentLength);
+			index.truncate(indexLength);
+			failed.truncate(failedLength);
+		}
+		return new SegmentStore(directory, resumeLine, doneLines, recovered, segmentLength, indexLength,
+				failedLength);
+
+	}
+
+	/**
+	 * Reads the articles of a store, in the order they were written.
+	 *
+	 * @param directory
+	 *            the store directory
+	 * @param consumer
+	 *            given the id and the content of each article, valid until
+	 *            it returns
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void read(Path directory, BiConsumer<String, ByteBuffer> consumer) throws IOException {
+
+		try (FileChannel segment = FileChannel.open(directory.resolve(SEGMENT), StandardOpenOption.READ);
+				DataInputStream index = new DataInputStream(
+						new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX))))) {
+			ByteBuffer content = ByteBuffer.allocate(1 << 12);
+			IndexEntry entry;
+			while ((entry = IndexEntry.read(index)) != null) {
+				if (content.capacity() < entry.length) {
+					content = ByteBuffer.allocate(Integer.highestOneBit(entry.length) << 1);
+				}
+				content.clear().limit(entry.length);
+				readFully(segment, content, entry.offset + RECORD_HEADER);
+				content.flip();
+				consumer.accept(entry.id, content);
+			}
+		}
+
+	}
+
+	/**
+	 * Gets the number of input lines fully processed at the last checkpoint.
+	 *
+	 * @return the line to resume from
+	 */
+	public long getResumeLine() {
+		return resumeLine;
+	}
+
+	/**
+	 * Checks if an input line beyond the resume line was processed, written
+	 * or failed, before the last checkpoint.
+	 *
+	 * @param line
+	 *            the input line, from 0
+	 * @return true if already processed
+	 */
+	public boolean isDone(long line) {
+		return doneLines.contains(line);
+	}
+
+	/**
+	 * Checks if an article was written after the last checkpoint, before the
+	 * store was opened.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @return true if already written
+	 */
+	public boolean isRecovered(String articleId) {
+		return recovered.contains(articleId);
+	}
+
+	/**
+	 * Checks an article id fits in the index.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @return true if an article with this id can be appended
+	 */
+	public static boolean isStorable(String articleId) {
+		return articleId.getBytes(StandardCharsets.UTF_8).length <= MAX_ID_BYTES;
+	}
+
+	/**
+	 * Appends an article.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param content
+	 *            the encoded article, from its position to its limit
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws IllegalArgumentException
+	 *             if the id is not storable, nothing being written
+	 */
+	public synchronized void append(String articleId, ByteBuffer content) throws IOException {
+
+		final int length = content.remaining();
+		/* checks the id before anything is written */
+		final IndexEntry entry = new IndexEntry(articleId, segmentLength, length);
+		final CRC32 crc = new CRC32();
+		crc.update(content.duplicate());
+		segment.writeInt(length);
+		segment.writeInt((int) crc.getValue());
+		if (content.hasArray()) {
+			segment.write(content.array(), content.arrayOffset() + content.position(), length);
+		} else {
+			byte[] bytes = new byte[length];
+			content.duplicate().get(bytes);
+			segment.write(bytes);
+		}
+		entry.write(index);
+		segmentLength += RECORD_HEADER + length;
+		indexLength += entry.size();
+		articles++;
+
+	}
+
+	/**
+	 * Records an article that could not be rendered.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void fail(String articleId) throws IOException {
+		final String line = articleId + "\n";
+		failed.write(line);
+		failedLength += line.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * Syncs the files and records the input lines fully processed.
+	 *
+	 * @param line
+	 *            the number of input lines fully processed
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void checkpoint(long line) throws IOException {
+		checkpoint(line, Collections.<Long>emptySet());
+	}
+
+	/**
+	 * Syncs the files and records the input lines fully processed, and those
+	 * processed beyond them while a lower line was still in progress.
+	 *
+	 * @param line
+	 *            the number of input lines fully processed
+	 * @param done
+	 *            the lines beyond, from 0, already written or failed
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void checkpoint(long line, Collection<Long> done) throws IOException {
+
+		sync(segment, segmentFile);
+		sync(index, indexFile);
+		sync(failed, failedFile);
+
+		final Properties checkpoint = new Properties();
+		checkpoint.setProperty("line", Long.toString(line));
+		checkpoint.setProperty("done", done.stream().map(String::valueOf).collect(Collectors.joining(",")));
+		checkpoint.setProperty("segmentLength", Long.toString(segmentLength));
+		checkpoint.setProperty("indexLength", Long.toString(indexLength));
+		checkpoint.setProperty("failedLength", Long.toString(failedLength));
+		final Path next = directory.resolve(CHECKPOINT + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(next.toFile())) {
+			checkpoint.store(out, null);
+			out.getFD().sync();
+		}
+		Files.move(next, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	/**
+	 * Gets the number of articles appended since the store was opened.
+	 *
+	 * @return the articles
+	 */
+	public synchronized int getArticles() {
+		return articles;
+	}
+
+	/**
+	 * Gets the length of the segment.
+	 *
+	 * @return the length in bytes
+	 */
+	public synchronized long getSegmentLength() {
+		return segmentLength;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try (OutputStream s = segment; OutputStream i = index; Writer f = failed) {
+			s.flush();
+			i.flush();
+			f.flush();
+		}
+	}
+
+	private static void sync(Flushable buffer, FileOutputStream file) throws IOException {
+		buffer.flush();
+		file.getFD().sync();
+	}
+
+	/**
+	 * Checks a record is complete and matches its CRC32.
+	 */
+	private static boolean valid(FileChannel segment, IndexEntry entry) throws IOException {
+
+		if (entry.offset + RECORD_HEADER + entry.length > segment.size()) {
+			return false;
+		}
+		final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + entry.length);
+		readFully(segment, record, entry.offset);
+		record.flip();
+		if (record.getInt() != entry.length) {
+			return false;
+		}
+		final int expected = record.getInt();
+		final CRC32 crc = new CRC32();
+		crc.update(record);
+		return (int) crc.getValue() == expected;
+
+	}
+
+	private static FileChannel openChannel(Path path) throws IOException {
+		return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+		long next = position;
+		while (target.hasRemaining()) {
+			int read = channel.read(target, next);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			next += read;
+		}
+	}
+
+	/**
+	 * Reads a channel from a position with positional reads, leaving it open.
+	 */
+	private static final class PositionedReader implements ReadableByteChannel {
+
+		private final FileChannel channel;
+		private long position;
+
+		PositionedReader(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		@Override
+		public int read(ByteBuffer target) throws IOException {
+			final int read = channel.read(target, position);
+			if (read > 0) {
+				position += read;
+			}
+			return read;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+	/**
+	 * An index entry: the article id, the offset of its record in the segment
+	 * and the length of its content.
+	 */
+	private static final class IndexEntry {
+
+		private final String id;
+		private final long offset;
+		private final int length;
+		private final byte[] utf8;
+
+		IndexEntry(String id, long offset, int length) {
+			this(id, id.getBytes(StandardCharsets.UTF_8), offset, length);
+			if (utf8.length > MAX_ID_BYTES) {
+				throw new IllegalArgumentException("Article id too long: " + id.substring(0, 64) + "...");
+			}
+		}
+
+		private IndexEntry(String id, byte[] utf8, long offset, int length) {
+			this.id = id;
+			this.utf8 = utf8;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Reads the next entry.
+		 *
+		 * @return the entry, or null at the end of the index or on an
+		 *         incomplete entry
+		 */
+		static IndexEntry read(DataInputStream in) throws IOException {
+			try {
+				final byte[] utf8 = new byte[in.readUnsignedShort()];
+				in.readFully(utf8);
+				final long offset = in.readLong();
+				final int length = in.readInt();
+				return new IndexEntry(new String(utf8, StandardCharsets.UTF_8), utf8, offset, length);
+			} catch (EOFException e) {
+				return null;
+			}
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeShort(utf8.length);
+			out.write(utf8);
+			out.writeLong(offset);
+			out.writeInt(length);
+		}
+
+		int size() {
+			return 2 + utf8.length + 8 + 4;
+		}
+
+	}
+
+}
@@ -0,0 +1,108 @@
+package telegraph.articles.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Class AssetFetchEvent.
+ * 
+ * Spans the retrieval of an image or a video of an enrichment through the
+ * asset cache. The cache miss flag is raised by the cache loader running on
+ * the same thread, see {@link #markCacheMiss()}: every fetch is the current
+ * one of its thread from its start to its completion, whether recorded or
+ * not, so that a load is never attributed to an earlier fetch.
+ */
+@Name(AssetFetchEvent.NAME)
+@Label("Asset Fetch")
+@Category({ "Telegraph", "Enrichment" })
+@Description("Retrieval of an image or a video of an enrichment through the asset cache")
+@StackTrace(false)
+public class AssetFetchEvent extends jdk.jfr.Event {
+
+	public static final String NAME = "telegraph.AssetFetch";
+
+	public static final String IMAGE = "image";
+
+	public static final String VIDEO = "video";
+
+	/** The fetch in progress on the current thread, enabled or not. */
+	private static final ThreadLocal<AssetFetchEvent> CURRENT = new ThreadLocal<>();
+
+	@Label("Article Id")
+	String articleId;
+
+	@Label("Asset Id")
+	String assetId;
+
+	@Label("Asset Type")
+	String assetType;
+
+	@Label("Cache Hit")
+	boolean cacheHit;
+
+	@Label("Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueWait;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Starts timing an asset fetch on the current thread.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param assetId
+	 *            the asset id
+	 * @param assetType
+	 *            the asset type
+	 * @param submitted
+	 *            the System.nanoTime() at which the task was submitted
+	 * @return the event
+	 */
+	public static AssetFetchEvent start(String articleId, String assetId, String assetType, long submitted) {
+		AssetFetchEvent event = new AssetFetchEvent();
+		event.begin();
+		if (event.isEnabled()) {
+			event.articleId = articleId;
+			event.assetId = assetId;
+			event.assetType = assetType;
+			event.cacheHit = true;
+			event.queueWait = System.nanoTime() - submitted;
+		}
+		CURRENT.set(event);
+		return event;
+	}
+
+	/**
+	 * Flags the fetch in progress on the current thread, if any, as a cache
+	 * miss.
+	 */
+	public static void markCacheMiss() {
+		AssetFetchEvent event = CURRENT.get();
+		if (event != null) {
+			event.cacheHit = false;
+		}
+	}
+
+	/**
+	 * Ends the fetch and commits the event if it passes the recording settings.
+	 * Must be called, in a finally block, by the thread that started it.
+	 *
+	 * @param t
+	 *            the failure, null on success
+	 */
+	public void complete(Throwable t) {
+		CURRENT.remove();
+		end();
+		if (shouldCommit()) {
+			outcome = Outcome.of(t);
+			commit();
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package telegraph.articles.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class AssetLoadEvent.
+ * 
+ * Spans an assets service call made on a cache miss.
+ */
+@Name(AssetLoadEvent.NAME)
+@Label("Asset Load")
+@Category({ "Telegraph", "Enrichment" })
+@Description("Assets service call made on a cache miss")
+@StackTrace(false)
+public class AssetLoadEvent extends jdk.jfr.Event {
+
+	public static final String NAME = "telegraph.AssetLoad";
+
+	@Label("Asset Id")
+	String assetId;
+
+	@Label("Asset Type")
+	String assetType;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Starts timing an asset load, flagging the enclosing fetch as a cache
+	 * miss.
+	 *
+	 * @param assetId
+	 *            the asset id
+	 * @param assetType
+	 *            the asset type
+	 * @return the event
+	 */
+	public static AssetLoadEvent start(String assetId, String assetType) {
+		AssetFetchEvent.markCacheMiss();
+		AssetLoadEvent event = new AssetLoadEvent();
+		event.begin();
+		if (event.isEnabled()) {
+			event.assetId = assetId;
+			event.assetType = assetType;
+		}
+		return event;
+	}
+
+	/**
+	 * Ends the load and commits the event if it passes the recording settings.
+	 *
+	 * @param t
+	 *            the failure, null on success
+	 */
+	public void complete(Throwable t) {
+		end();
+		if (shouldCommit()) {
+			outcome = Outcome.of(t);
+			commit();
+		}
+	}
+
+}
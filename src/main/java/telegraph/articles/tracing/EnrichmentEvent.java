@@ -0,0 +1,61 @@
+package telegraph.articles.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Class EnrichmentEvent.
+ * 
+ * Spans a whole enrichArticleWithId call, from the request to the completion
+ * of the returned future.
+ */
+@Name(EnrichmentEvent.NAME)
+@Label("Article Enrichment")
+@Category({ "Telegraph", "Enrichment" })
+@Description("Enrichment of an article, from the request to the completion of the returned future")
+@StackTrace(false)
+public class EnrichmentEvent extends jdk.jfr.Event {
+
+	public static final String NAME = "telegraph.Enrichment";
+
+	@Label("Article Id")
+	String articleId;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Starts timing an enrichment.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @return the event
+	 */
+	public static EnrichmentEvent start(String articleId) {
+		EnrichmentEvent event = new EnrichmentEvent();
+		event.begin();
+		if (event.isEnabled()) {
+			event.articleId = articleId;
+		}
+		return event;
+	}
+
+	/**
+	 * Ends the enrichment and commits the event if it passes the recording
+	 * settings.
+	 *
+	 * @param t
+	 *            the failure, null on success
+	 */
+	public void complete(Throwable t) {
+		end();
+		if (shouldCommit()) {
+			outcome = Outcome.of(t);
+			commit();
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package telegraph.articles.tracing;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The Class Outcome.
+ * 
+ * Outcome labels carried by the enrichment events.
+ */
+public final class Outcome {
+
+	public static final String SUCCESS = "success";
+
+	public static final String TIMEOUT = "timeout";
+
+	public static final String FAILURE = "failure";
+
+	private Outcome() {
+	}
+
+	/**
+	 * Classifies a failure, walking its cause chain.
+	 *
+	 * @param t
+	 *            the failure, null on success
+	 * @return the outcome label
+	 */
+	public static String of(Throwable t) {
+		for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+			if (cause instanceof TimeoutException) {
+				return TIMEOUT;
+			}
+		}
+		return t == null ? SUCCESS : FAILURE;
+	}
+
+}
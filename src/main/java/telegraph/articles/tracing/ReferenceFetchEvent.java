@@ -0,0 +1,69 @@
+package telegraph.articles.tracing;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Class ReferenceFetchEvent.
+ * 
+ * Spans the article repository call of an enrichment. The time spent by the
+ * task waiting for a thread is reported apart and is not part of the
+ * duration.
+ */
+@Name(ReferenceFetchEvent.NAME)
+@Label("Reference Fetch")
+@Category({ "Telegraph", "Enrichment" })
+@Description("Article repository call of an enrichment")
+@StackTrace(false)
+public class ReferenceFetchEvent extends jdk.jfr.Event {
+
+	public static final String NAME = "telegraph.ReferenceFetch";
+
+	@Label("Article Id")
+	String articleId;
+
+	@Label("Queue Wait")
+	@Timespan(Timespan.NANOSECONDS)
+	long queueWait;
+
+	@Label("Outcome")
+	String outcome;
+
+	/**
+	 * Starts timing a reference fetch.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param submitted
+	 *            the System.nanoTime() at which the task was submitted
+	 * @return the event
+	 */
+	public static ReferenceFetchEvent start(String articleId, long submitted) {
+		ReferenceFetchEvent event = new ReferenceFetchEvent();
+		event.begin();
+		if (event.isEnabled()) {
+			event.articleId = articleId;
+			event.queueWait = System.nanoTime() - submitted;
+		}
+		return event;
+	}
+
+	/**
+	 * Ends the fetch and commits the event if it passes the recording settings.
+	 *
+	 * @param t
+	 *            the failure, null on success
+	 */
+	public void complete(Throwable t) {
+		end();
+		if (shouldCommit()) {
+			outcome = Outcome.of(t);
+			commit();
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+package telegraph.articles.tracing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * The Class SlowestEnrichments.
+ * 
+ * Lists the slowest enrichments of a flight recording together with their
+ * stages, to tell queueing, reference calls, cache misses and slow assets
+ * apart:
+ * 
+ * java -cp telegraph.articles.jar telegraph.articles.tracing.SlowestEnrichments enrichment.jfr [count]
+ */
+public class SlowestEnrichments {
+
+	/** The number of enrichments listed by default. */
+	private static final int DEFAULT_COUNT = 20;
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 1) {
+			System.err.println("usage: SlowestEnrichments <recording.jfr> [count]");
+			System.exit(1);
+		}
+		final Path recording = Paths.get(args[0]);
+		final int count = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COUNT;
+
+		final List<RecordedEvent> enrichments = new ArrayList<>();
+		final Map<String, List<RecordedEvent>> stagesByArticle = new HashMap<>();
+		final Map<String, List<RecordedEvent>> loadsByAsset = new HashMap<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(recording)) {
+			switch (event.getEventType().getName()) {
+			case EnrichmentEvent.NAME:
+				enrichments.add(event);
+				break;
+			case ReferenceFetchEvent.NAME:
+			case AssetFetchEvent.NAME:
+				stagesByArticle.computeIfAbsent(event.getString("articleId"), k -> new ArrayList<>()).add(event);
+				break;
+			case AssetLoadEvent.NAME:
+				loadsByAsset.computeIfAbsent(event.getString("assetId"), k -> new ArrayList<>()).add(event);
+				break;
+			default:
+				break;
+			}
+		}
+
+		enrichments.sort(Comparator.comparing((RecordedEvent event) -> event.getDuration()).reversed());
+		for (RecordedEvent enrichment : enrichments.subList(0, Math.min(count, enrichments.size()))) {
+			System.out.printf("%s %s %s at %s%n", millis(enrichment.getDuration()), enrichment.getString("articleId"),
+					enrichment.getString("outcome"), enrichment.getStartTime());
+			for (RecordedEvent stage : within(enrichment, stagesByArticle.get(enrichment.getString("articleId")))) {
+				if (ReferenceFetchEvent.NAME.equals(stage.getEventType().getName())) {
+					System.out.printf("    reference %s (queued %s) %s%n", millis(stage.getDuration()),
+							millis(stage.getDuration("queueWait")), stage.getString("outcome"));
+				} else {
+					System.out.printf("    %-9s %s (queued %s) %s %s %s%n", stage.getString("assetType"),
+							millis(stage.getDuration()), millis(stage.getDuration("queueWait")),
+							stage.getBoolean("cacheHit") ? "hit" : "miss", stage.getString("outcome"),
+							stage.getString("assetId"));
+					for (RecordedEvent load : within(stage, loadsByAsset.get(stage.getString("assetId")))) {
+						System.out.printf("        load %s %s%n", millis(load.getDuration()), load.getString("outcome"));
+					}
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Selects the events that happened during the given one.
+	 *
+	 * @param outer
+	 *            the enclosing event
+	 * @param events
+	 *            the candidate events, may be null
+	 * @return the events within the enclosing one, by start time
+	 */
+	private static List<RecordedEvent> within(RecordedEvent outer, List<RecordedEvent> events) {
+		List<RecordedEvent> result = new ArrayList<>();
+		if (events != null) {
+			for (RecordedEvent event : events) {
+				if (!event.getStartTime().isBefore(outer.getStartTime())
+						&& !event.getEndTime().isAfter(outer.getEndTime())) {
+					result.add(event);
+				}
+			}
+		}
+		result.sort(Comparator.comparing((RecordedEvent event) -> event.getStartTime()));
+		return result;
+	}
+
+	private static String millis(Duration duration) {
+		return String.format("%.3f ms", duration.toNanos() / 1e6);
+	}
+
+}
@@ -0,0 +1,163 @@
+package telegraph.articles.web;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.implementation.ServiceTimeoutException;
+import telegraph.articles.models.ArticleReference;
+import telegraph.articles.models.RichArticle;
+
+/**
+ * The Class ArticleController.
+ * 
+ * Serves enriched articles as JSON without holding a servlet thread while the
+ * enrichment is in progress. The entity tag of the last enrichment of each
+ * article is kept in the "articleETags" cache together with the cached assets
+ * it was derived from: a client holding the current version gets a 304 with
+ * no enrichment work, only a lookup of the article reference, for as long as
+ * these assets are still the cached ones and the reference is unchanged
+ * ({@link KnownETag}). When the request ends before the enrichment, on timeout or
+ * because the client went away, the enrichment is cancelled.
+ */
+@RestController
+public class ArticleController {
+
+	/** Article enricher service. */
+	@Autowired
+	ArticleEnricher articleEnricher;
+
+	@Autowired
+	RichArticleJsonWriter richArticleJsonWriter;
+
+	@Autowired
+	CacheManager cacheManager;
+
+	/**
+	 * Gets an enriched article.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param ifNoneMatch
+	 *            the entity tags held by the client, if any
+	 * @return the response, set when the enrichment is complete
+	 */
+	@GetMapping("/articles/{articleId}")
+	public DeferredResult<ResponseEntity<StreamingResponseBody>> getArticle(@PathVariable String articleId,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+		final DeferredResult<ResponseEntity<StreamingResponseBody>> response = new DeferredResult<>();
+		final Cache eTags = cacheManager.getCache("articleETags");
+		final KnownETag knownETag = ifNoneMatch == null ? null : eTags.get(articleId, KnownETag.class);
+		if (knownETag != null && ArticleETags.matches(ifNoneMatch, knownETag.getETag())
+				&& knownETag.isCurrent(cacheManager.getCache("images"), cacheManager.getCache("videos"))) {
+			/* the assets are unchanged: the reference, a single call, tells if the article is */
+			final Future<ArticleReference> reference = articleEnricher.getArticleReferenceForId(articleId);
+			response.onCompletion(() -> reference.cancel(true));
+			toCompletableFuture(reference).whenComplete((articleReference, t) -> {
+				if (t != null) {
+					response.setResult(failure(t));
+				} else if (knownETag.isDerivedFrom(articleReference)) {
+					response.setResult(notModified(knownETag.getETag()));
+				} else {
+					enrich(articleId, ifNoneMatch, eTags, response);
+				}
+			});
+			return response;
+		}
+		enrich(articleId, ifNoneMatch, eTags, response);
+		return response;
+
+	}
+
+	/**
+	 * Enriches an article and sets the response once done.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @param ifNoneMatch
+	 *            the entity tags held by the client, if any
+	 * @param eTags
+	 *            the "articleETags" cache
+	 * @param response
+	 *            the response
+	 */
+	private void enrich(String articleId, String ifNoneMatch, Cache eTags,
+			DeferredResult<ResponseEntity<StreamingResponseBody>> response) {
+
+		final Future<RichArticle> enrichment = articleEnricher.enrichArticleWithId(articleId);
+		/* no-op if the enrichment is already complete */
+		response.onCompletion(() -> enrichment.cancel(true));
+		toCompletableFuture(enrichment).<ResponseEntity<StreamingResponseBody>>handle((richArticle, t) -> {
+			if (t != null) {
+				return failure(t);
+			}
+			String eTag = ArticleETags.of(richArticle);
+			eTags.put(articleId, KnownETag.of(eTag, richArticle));
+			if (ArticleETags.matches(ifNoneMatch, eTag)) {
+				return notModified(eTag);
+			}
+			return ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON_UTF8)
+					.body(out -> richArticleJsonWriter.write(richArticle, out));
+		}).thenAccept(response::setResult);
+
+	}
+
+	private static ResponseEntity<StreamingResponseBody> notModified(String eTag) {
+		return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+	}
+
+	/**
+	 * Maps an enrichment failure: 504 when a service did not answer in time,
+	 * 503 when the enrichment queue was full, 502 otherwise.
+	 *
+	 * @param t
+	 *            the failure
+	 * @return the response
+	 */
+	private static ResponseEntity<StreamingResponseBody> failure(Throwable t) {
+		Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+		if (cause instanceof ServiceTimeoutException) {
+			return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+		}
+		if (cause instanceof RejectedExecutionException) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		}
+		return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+	}
+
+	/**
+	 * Adapts the future returned by the enricher, a completion stage: the
+	 * response is completed without a thread waiting on the enrichment.
+	 *
+	 * @param future
+	 *            the future
+	 * @return the completable future
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> CompletableFuture<T> toCompletableFuture(Future<T> future) {
+		if (!(future instanceof CompletionStage)) {
+			throw new IllegalStateException("Enrichment not a CompletionStage: " + future.getClass().getName());
+		}
+		/* safe: a Future<T> that is a CompletionStage completes with the same T */
+		return ((CompletionStage<T>) future).toCompletableFuture();
+	}
+
+}
@@ -0,0 +1,78 @@
+package telegraph.articles.web;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import telegraph.articles.codec.ArticleCodec;
+import telegraph.articles.models.RichArticle;
+
+/**
+ * The Class ArticleETags.
+ * 
+ * Strong entity tags of enriched articles, derived from the binary encoding of
+ * the article and of its assets: any change of the article or of one of its
+ * asset versions changes the tag.
+ */
+public final class ArticleETags {
+
+	/** The number of digest bytes kept in the tag. */
+	private static final int TAG_BYTES = 16;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private ArticleETags() {
+	}
+
+	/**
+	 * Computes the entity tag of an enriched article.
+	 *
+	 * @param richArticle
+	 *            the rich article
+	 * @return the quoted strong entity tag
+	 */
+	public static String of(RichArticle richArticle) {
+		ByteBuffer encoded = ArticleCodec.encode(richArticle);
+		byte[] digest = sha256().digest(encoded.array());
+		StringBuilder tag = new StringBuilder(TAG_BYTES * 2 + 2).append('"');
+		for (int b = 0; b < TAG_BYTES; b++) {
+			tag.append(HEX[(digest[b] >> 4) & 0xf]).append(HEX[digest[b] & 0xf]);
+		}
+		return tag.append('"').toString();
+	}
+
+	/**
+	 * Checks an If-None-Match header against an entity tag, with the weak
+	 * comparison required for that header.
+	 *
+	 * @param ifNoneMatch
+	 *            the header value, may be null
+	 * @param eTag
+	 *            the current entity tag, may be null
+	 * @return true if the client copy is current
+	 */
+	public static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null || eTag == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package telegraph.articles.web;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+
+import telegraph.articles.models.ArticleReference;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class KnownETag.
+ *
+ * Entity tag of the last enrichment of an article, together with the
+ * reference content and the cached assets it was derived from. The tag holds
+ * only while each asset is still the entry of its cache, and the reference
+ * still names the same article and assets: once an asset entry has been
+ * replaced, has expired or has been evicted, or the article has been renamed
+ * or its assets changed, the tag may describe stale content and the article
+ * is enriched again.
+ */
+final class KnownETag {
+
+	private final String eTag;
+
+	private final String articleId;
+
+	private final String name;
+
+	private final Image heroImage;
+
+	private final Collection<Video> videos;
+
+	private KnownETag(String eTag, String articleId, String name, Image heroImage, Collection<Video> videos) {
+		this.eTag = eTag;
+		this.articleId = articleId;
+		this.name = name;
+		this.heroImage = heroImage;
+		this.videos = videos;
+	}
+
+	/**
+	 * Records the entity tag of an enriched article.
+	 *
+	 * @param eTag
+	 *            the entity tag
+	 * @param richArticle
+	 *            the rich article, holding the cached assets
+	 * @return the known entity tag
+	 */
+	static KnownETag of(String eTag, RichArticle richArticle) {
+		return new KnownETag(eTag, richArticle.getId(), richArticle.getName(), richArticle.getHeroImage(),
+				richArticle.getVideos());
+	}
+
+	String getETag() {
+		return eTag;
+	}
+
+	/**
+	 * Checks the assets the tag was derived from are still the cached ones.
+	 *
+	 * @param images
+	 *            the "images" cache, by article id
+	 * @param videos
+	 *            the "videos" cache, by video id
+	 * @return true if the tag still describes the cached content
+	 */
+	boolean isCurrent(Cache images, Cache videos) {
+		if (heroImage != null && !isCached(images, articleId, heroImage)) {
+			return false;
+		}
+		if (this.videos != null) {
+			for (Video video : this.videos) {
+				if (video != null && !isCached(videos, video.getId(), video)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks the tag was derived from the current reference of the article:
+	 * same name, hero image and videos, in the same order.
+	 *
+	 * @param articleReference
+	 *            the current reference
+	 * @return true if the reference is unchanged
+	 */
+	boolean isDerivedFrom(ArticleReference articleReference) {
+		if (!Objects.equals(name, articleReference.getName()) || !Objects.equals(
+				heroImage == null ? null : heroImage.getId(), articleReference.getHeroImageUrl())) {
+			return false;
+		}
+		final Collection<String> videoUrls = articleReference.getVideoUrls();
+		if (videos == null || videoUrls == null) {
+			return videos == null && videoUrls == null;
+		}
+		if (videos.size() != videoUrls.size()) {
+			return false;
+		}
+		final Iterator<String> urls = videoUrls.iterator();
+		for (Video video : videos) {
+			if (video == null || !video.getId().equals(urls.next())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isCached(Cache cache, String key, Object asset) {
+		ValueWrapper entry = cache.get(key);
+		return entry != null && entry.get() == asset;
+	}
+
+}
@@ -0,0 +1,89 @@
+package telegraph.articles.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class RichArticleJsonWriter.
+ * 
+ * Writes a rich article as JSON straight to the response stream, flushing
+ * every few videos so that large articles leave in chunks instead of being
+ * buffered whole.
+ */
+@Component
+public class RichArticleJsonWriter {
+
+	/** The number of videos written between two flushes. */
+	@Value("${web.streaming.videosPerChunk}")
+	private int videosPerChunk;
+
+	@Autowired
+	ObjectMapper objectMapper;
+
+	/**
+	 * Writes a rich article.
+	 *
+	 * @param richArticle
+	 *            the rich article
+	 * @param out
+	 *            the response stream, left open
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(RichArticle richArticle, OutputStream out) throws IOException {
+
+		try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+			/* the response stream belongs to the container */
+			json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			json.writeStartObject();
+			json.writeStringField("id", richArticle.getId());
+			json.writeStringField("name", richArticle.getName());
+			Image heroImage = richArticle.getHeroImage();
+			if (heroImage == null) {
+				json.writeNullField("heroImage");
+			} else {
+				json.writeObjectFieldStart("heroImage");
+				json.writeStringField("id", heroImage.getId());
+				json.writeStringField("altText", heroImage.getAltText());
+				json.writeEndObject();
+			}
+			Collection<Video> videos = richArticle.getVideos();
+			if (videos == null) {
+				json.writeNullField("videos");
+			} else {
+				json.writeArrayFieldStart("videos");
+				int written = 0;
+				for (Video video : videos) {
+					if (video == null) {
+						json.writeNull();
+					} else {
+						json.writeStartObject();
+						json.writeStringField("id", video.getId());
+						json.writeStringField("caption", video.getCaption());
+						json.writeEndObject();
+					}
+					if (++written % videosPerChunk == 0) {
+						json.flush();
+					}
+				}
+				json.writeEndArray();
+			}
+			json.writeEndObject();
+		}
+
+	}
+
+}
@@ -0,0 +1,36 @@
+package telegraph.articles.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * The Class WebConfiguration.
+ * 
+ * Streamed response bodies are written on a bounded pool instead of the
+ * default executor, which starts a thread per response.
+ */
+@Configuration
+public class WebConfiguration extends WebMvcConfigurerAdapter {
+
+	@Value("${web.streaming.threads}")
+	private int streamingThreads;
+
+	@Bean
+	public ThreadPoolTaskExecutor streamingTaskExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(streamingThreads);
+		executor.setMaxPoolSize(streamingThreads);
+		executor.setThreadNamePrefix("streaming-");
+		return executor;
+	}
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(streamingTaskExecutor());
+	}
+
+}
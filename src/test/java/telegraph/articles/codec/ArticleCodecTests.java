@@ -0,0 +1,180 @@
+package telegraph.articles.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class ArticleCodecTests.
+ */
+public class ArticleCodecTests {
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	private static final RichArticle ARTICLE = new RichArticle("article", "name è中",
+			new Image("article_heroImageUrl", "altText"),
+			Arrays.asList(new Video("article_video_a", "c_a"), new Video("article_video_b", null)));
+
+	/**
+	 * Tests a rich article survives a round trip, among other records.
+	 */
+	@Test
+	public void testRichArticleRoundTrip() {
+
+		ByteBuffer buffer = ByteBuffer.allocate(2 * ArticleCodec.encodedLength(ARTICLE));
+		ArticleCodec.encode(ARTICLE, buffer);
+		ArticleCodec.encode(new RichArticle("other", null, null, null), buffer);
+		buffer.flip();
+
+		assertMatch(ARTICLE, ArticleCodec.decode(buffer));
+		RichArticle other = ArticleCodec.decode(buffer);
+		assertEquals("other", other.getId());
+		assertNull(other.getHeroImage());
+		assertNull(other.getVideos());
+		assertFalse("Buffer not consumed", buffer.hasRemaining());
+
+	}
+
+	/**
+	 * Tests single fields are read in place.
+	 */
+	@Test
+	public void testViewReadsSingleFields() {
+
+		ByteBuffer buffer = ArticleCodec.encode(ARTICLE);
+		RichArticleView view = ArticleCodec.view(buffer);
+
+		assertEquals(buffer.remaining(), view.length());
+		assertEquals(2, view.videoCount());
+		assertEquals("article_video_b", view.videoId(1));
+		assertNull(view.videoCaption(1));
+		assertEquals("article", StandardCharsets.UTF_8.decode(view.idBytes()).toString());
+		assertTrue(view.hasHeroImage());
+		assertEquals(0, buffer.position());
+
+	}
+
+	/**
+	 * Tests assets survive a round trip.
+	 */
+	@Test
+	public void testAssetsRoundTrip() {
+
+		Video video = ArticleCodec.decodeVideo(ArticleCodec.encode(new Video("video", "caption")));
+		Image image = ArticleCodec.decodeImage(ArticleCodec.encode(new Image("image", "altText")));
+
+		assertEquals("video", video.getId());
+		assertEquals("caption", video.getCaption());
+		assertEquals("image", image.getId());
+		assertEquals("altText", image.getAltText());
+
+	}
+
+	/**
+	 * Tests records of another format version are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedVersionRejected() {
+
+		ByteBuffer buffer = ArticleCodec.encode(ARTICLE);
+		buffer.put(0, (byte) (ArticleCodec.VERSION + 1));
+		ArticleCodec.decode(buffer);
+
+	}
+
+	/**
+	 * Tests a truncated record is rejected before any field is read.
+	 */
+	@Test
+	public void testTruncatedRecordRejected() {
+
+		ByteBuffer buffer = ArticleCodec.encode(ARTICLE);
+		buffer.limit(buffer.limit() - 3);
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Corrupt record");
+		ArticleCodec.decode(buffer);
+
+	}
+
+	/**
+	 * Tests corrupt counts and lengths are rejected instead of being
+	 * allocated.
+	 */
+	@Test
+	public void testCorruptLengthsRejected() {
+
+		ByteBuffer buffer = ArticleCodec.encode(ARTICLE);
+		buffer.putInt(ArticleCodec.VIDEO_COUNT_POSITION, Integer.MAX_VALUE);
+		assertCorrupt(buffer);
+
+		buffer = ArticleCodec.encode(ARTICLE);
+		int nameOffset = buffer.getInt(ArticleCodec.OFFSETS_POSITION + Integer.BYTES * ArticleCodec.NAME);
+		buffer.putInt(nameOffset, Integer.MAX_VALUE);
+		assertCorrupt(buffer);
+
+		ByteBuffer video = ArticleCodec.encode(new Video("video", "caption"));
+		video.putInt(2, 1 << 30);
+		thrown.expect(IllegalArgumentException.class);
+		thrown.expectMessage("Corrupt record");
+		ArticleCodec.decodeVideo(video);
+
+	}
+
+	/**
+	 * Tests null videos survive a round trip.
+	 */
+	@Test
+	public void testNullVideoRoundTrip() {
+
+		RichArticle article = new RichArticle("article", "name", null,
+				Arrays.asList(new Video("video_a", "c_a"), null));
+
+		List<Video> videos = (List<Video>) ArticleCodec.decode(ArticleCodec.encode(article)).getVideos();
+
+		assertEquals(2, videos.size());
+		assertEquals("video_a", videos.get(0).getId());
+		assertNull(videos.get(1));
+
+	}
+
+	private static void assertCorrupt(ByteBuffer buffer) {
+		try {
+			ArticleCodec.decode(buffer);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupt record"));
+			return;
+		}
+		throw new AssertionError("Corrupt record decoded");
+	}
+
+	private static void assertMatch(RichArticle expected, RichArticle actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getHeroImage().getId(), actual.getHeroImage().getId());
+		assertEquals(expected.getHeroImage().getAltText(), actual.getHeroImage().getAltText());
+		assertEquals(expected.getVideos().size(), actual.getVideos().size());
+		Iterator<Video> actualVideos = actual.getVideos().iterator();
+		for (Video video : expected.getVideos()) {
+			Video actualVideo = actualVideos.next();
+			assertEquals(video.getId(), actualVideo.getId());
+			assertEquals(video.getCaption(), actualVideo.getCaption());
+		}
+	}
+
+}
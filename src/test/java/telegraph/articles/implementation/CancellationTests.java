@@ -0,0 +1,183 @@
+package telegraph.articles.implementation;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.isA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.models.ArticleReference;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class CancellationTests.
+ *
+ * Exercises the enricher without caching proxy, against downstream futures
+ * that never complete unless told to: cancellations must reach them, except
+ * for the calls other callers are still waiting on.
+ */
+public class CancellationTests {
+
+	private static final String ARTICLE_ID = "article";
+
+	@Rule
+	public ExpectedException thrown = ExpectedException.none();
+
+	private ArticleRepositoryClient articleRepositoryClientMock;
+
+	private AssetsServiceClient assetsServiceClientMock;
+
+	/** The enricher under test. */
+	private ArticleEnricherImpl articleEnricher;
+
+	@Before
+	public void setUp() {
+		articleRepositoryClientMock = mock(ArticleRepositoryClient.class);
+		assetsServiceClientMock = mock(AssetsServiceClient.class);
+
+		CacheableAssetsServiceClientImpl cacheableAssetsServiceClient = new CacheableAssetsServiceClientImpl();
+		cacheableAssetsServiceClient.assetsServiceClient = assetsServiceClientMock;
+		cacheableAssetsServiceClient.cacheManager = new ConcurrentMapCacheManager();
+		cacheableAssetsServiceClient.assetPayloads = new AssetPayloads();
+		cacheableAssetsServiceClient.serviceTimeouts = ServiceTimeoutsTests.fixed(10_000L);
+
+		articleEnricher = new ArticleEnricherImpl();
+		articleEnricher.articleReferences = new ArticleReferences();
+		articleEnricher.articleReferences.articleRepositoryClient = articleRepositoryClientMock;
+		articleEnricher.articleReferences.serviceTimeouts = cacheableAssetsServiceClient.serviceTimeouts;
+		articleEnricher.casheableAssetsServiceClient = cacheableAssetsServiceClient;
+		articleEnricher.failureLog = new FailureLog();
+		ReflectionTestUtils.setField(articleEnricher, "threads", 8);
+		ReflectionTestUtils.setField(articleEnricher, "queue", 8);
+		articleEnricher.startExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		articleEnricher.stopExecutor();
+	}
+
+	/**
+	 * Cancelling the enrichment cancels the reference lookup in progress.
+	 */
+	@Test
+	public void testCancelCancelsReferenceLookup() {
+
+		CompletableFuture<ArticleReference> reference = new CompletableFuture<>();
+		given(articleRepositoryClientMock.getArticleReferenceForId(ARTICLE_ID)).willReturn(reference);
+
+		Future<RichArticle> enrichment = articleEnricher.enrichArticleWithId(ARTICLE_ID);
+		await().atMost(5, TimeUnit.SECONDS).until(() -> articleEnricher.articleReferences.fetches.size() == 1);
+		enrichment.cancel(true);
+
+		await().atMost(5, TimeUnit.SECONDS).until(reference::isCancelled);
+
+	}
+
+	/**
+	 * A failing video cancels the fetches of the hero image and of the other
+	 * videos, and the enrichment fails with the video failure.
+	 */
+	@Test
+	public void testFailureCancelsSiblingFetches() throws Exception {
+
+		CompletableFuture<Image> image = new CompletableFuture<>();
+		CompletableFuture<Video> videoB = new CompletableFuture<>();
+		CompletableFuture<Video> videoA = new CompletableFuture<>();
+		given(articleRepositoryClientMock.getArticleReferenceForId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(new ArticleReference(ARTICLE_ID, "name", "image",
+						Arrays.asList("video_a", "video_b"))));
+		given(assetsServiceClientMock.getImageById("image")).willReturn(image);
+		given(assetsServiceClientMock.getVideoById("video_a")).willReturn(videoA);
+		given(assetsServiceClientMock.getVideoById("video_b")).willReturn(videoB);
+
+		Future<RichArticle> enrichment = articleEnricher.enrichArticleWithId(ARTICLE_ID);
+		verify(assetsServiceClientMock, timeout(5000)).getImageById("image");
+		verify(assetsServiceClientMock, timeout(5000)).getVideoById("video_b");
+		videoA.completeExceptionally(new IllegalStateException("video a"));
+		try {
+			thrown.expectCause(isA(ServiceException.class));
+			enrichment.get(5, TimeUnit.SECONDS);
+		} finally {
+			await().atMost(5, TimeUnit.SECONDS).until(() -> image.isCancelled() && videoB.isCancelled());
+		}
+
+	}
+
+	/**
+	 * With every thread busy and the queue full, an enrichment fails at once
+	 * rather than waiting for a thread.
+	 */
+	@Test
+	public void testFullQueueFailsFast() throws Exception {
+
+		given(articleRepositoryClientMock.getArticleReferenceForId(ARTICLE_ID)).willReturn(new CompletableFuture<>());
+		articleEnricher.stopExecutor();
+		ReflectionTestUtils.setField(articleEnricher, "threads", 1);
+		ReflectionTestUtils.setField(articleEnricher, "queue", 1);
+		articleEnricher.startExecutor();
+
+		articleEnricher.enrichArticleWithId(ARTICLE_ID);
+		await().atMost(5, TimeUnit.SECONDS).until(() -> articleEnricher.articleReferences.fetches.size() == 1);
+		articleEnricher.enrichArticleWithId(ARTICLE_ID);
+
+		thrown.expectCause(isA(RejectedExecutionException.class));
+		articleEnricher.enrichArticleWithId(ARTICLE_ID).get(5, TimeUnit.SECONDS);
+
+	}
+
+	/**
+	 * A caller giving up does not cancel a call another caller waits on.
+	 */
+	@Test
+	public void testSharedFetchSurvivesCancellation() throws Exception {
+
+		InFlightFetches<String> fetches = new InFlightFetches<>(ServiceCalls.VIDEOS);
+		ServiceTimeouts serviceTimeouts = ServiceTimeoutsTests.fixed(10_000L);
+		CompletableFuture<String> call = new CompletableFuture<>();
+		ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> first = callers.submit(() -> fetches.await("key", () -> call, serviceTimeouts));
+			await().atMost(5, TimeUnit.SECONDS).until(() -> fetches.waiters("key") == 1);
+			Future<String> second = callers.submit(() -> fetches.await("key", () -> {
+				throw new AssertionError("the call in progress must be shared");
+			}, serviceTimeouts));
+			await().atMost(5, TimeUnit.SECONDS).until(() -> fetches.waiters("key") == 2);
+
+			first.cancel(true);
+			await().atMost(5, TimeUnit.SECONDS).until(() -> fetches.waiters("key") == 1);
+			assertFalse(call.isCancelled());
+
+			call.complete("answer");
+			assertEquals("answer", second.get(5, TimeUnit.SECONDS));
+			assertEquals(0, fetches.size());
+		} finally {
+			callers.shutdownNow();
+		}
+
+	}
+
+}
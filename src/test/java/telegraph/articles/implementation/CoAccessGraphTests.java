@@ -0,0 +1,60 @@
+package telegraph.articles.implementation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * The Class CoAccessGraphTests.
+ */
+public class CoAccessGraphTests {
+
+	@Test
+	public void testNextMostFrequentFirst() {
+
+		CoAccessGraph graph = new CoAccessGraph(10, 4);
+		graph.record("a", "b");
+		graph.record("a", "c");
+		graph.record("a", "c");
+		graph.record("a", "d");
+		graph.record("a", "c");
+		graph.record("a", "d");
+
+		assertEquals(Arrays.asList("c", "d"), graph.next("a", 2));
+		assertEquals(Collections.emptyList(), graph.next("b", 2));
+
+	}
+
+	@Test
+	public void testSuccessorsBounded() {
+
+		CoAccessGraph graph = new CoAccessGraph(10, 2);
+		graph.record("a", "b");
+		graph.record("a", "b");
+		graph.record("a", "c");
+		/* replaces c, the least counted, and takes over its count */
+		graph.record("a", "d");
+
+		assertEquals(Arrays.asList("b", "d"), graph.next("a", 3));
+
+	}
+
+	@Test
+	public void testArticlesBounded() {
+
+		CoAccessGraph graph = new CoAccessGraph(2, 2);
+		graph.record("a", "x");
+		graph.record("b", "x");
+		graph.next("a", 1);
+		graph.record("c", "x");
+
+		assertEquals(2, graph.size());
+		assertEquals(Collections.emptyList(), graph.next("b", 1));
+		assertEquals(Collections.singletonList("x"), graph.next("a", 1));
+
+	}
+
+}
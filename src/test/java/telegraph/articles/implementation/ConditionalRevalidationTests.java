@@ -0,0 +1,174 @@
+package telegraph.articles.implementation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import telegraph.articles.clients.ConditionalAssetsServiceClient;
+import telegraph.articles.models.VersionedAsset;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class ConditionalRevalidationTests.
+ * 
+ * Exercises the cache loader directly, as after the expiry of the fresh
+ * entry: assets are revalidated through the conditional fetches of the assets
+ * service.
+ */
+public class ConditionalRevalidationTests {
+
+	private static final String VIDEO_ID = "article_video_a";
+
+	/** The conditional assets service client mock. */
+	private ConditionalAssetsServiceClient assetsServiceClientMock;
+
+	/** The cache manager. */
+	private ConcurrentMapCacheManager cacheManager;
+
+	/** The cacheable asset service client under test, without caching proxy. */
+	private CacheableAssetsServiceClientImpl cacheableAssetsServiceClient;
+
+	/** The video returned by the first, unconditional, fetch. */
+	private Video video;
+
+	@Before
+	public void setUp() {
+		assetsServiceClientMock = mock(ConditionalAssetsServiceClient.class);
+		cacheManager = new ConcurrentMapCacheManager("videos", "images", "videoVersions", "imageVersions");
+		cacheableAssetsServiceClient = new CacheableAssetsServiceClientImpl();
+		cacheableAssetsServiceClient.assetsServiceClient = assetsServiceClientMock;
+		cacheableAssetsServiceClient.cacheManager = cacheManager;
+		cacheableAssetsServiceClient.assetPayloads = new AssetPayloads();
+		cacheableAssetsServiceClient.serviceTimeouts = ServiceTimeoutsTests.fixed(1000L);
+
+		video = new Video(VIDEO_ID, "c_" + VIDEO_ID);
+		given(assetsServiceClientMock.getVideoByIdIfModified(VIDEO_ID, null))
+				.willReturn(CompletableFuture.completedFuture(VersionedAsset.modified(video, "v1")));
+	}
+
+	/**
+	 * Tests a "not modified" answer returns the kept video.
+	 */
+	@Test
+	public void testNotModifiedReturnsKeptVideo() {
+
+		given(assetsServiceClientMock.getVideoByIdIfModified(VIDEO_ID, "v1"))
+				.willReturn(CompletableFuture.completedFuture(VersionedAsset.<Video>notModified("v1")));
+
+		Video first = cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+		Video second = cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+
+		assertSame("Kept video not reused", first, second);
+		verify(assetsServiceClientMock).getVideoByIdIfModified(VIDEO_ID, "v1");
+		verify(assetsServiceClientMock, never()).getVideoById(anyString());
+
+	}
+
+	/**
+	 * Tests a modified video replaces the kept one and its version.
+	 */
+	@Test
+	public void testModifiedReplacesKeptVideo() {
+
+		Video updated = new Video(VIDEO_ID, "updated_" + VIDEO_ID);
+		given(assetsServiceClientMock.getVideoByIdIfModified(VIDEO_ID, "v1"))
+				.willReturn(CompletableFuture.completedFuture(VersionedAsset.modified(updated, "v2")));
+
+		cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+		Video second = cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+
+		assertSame("Updated video not returned", updated, second);
+		assertEquals("Version not updated", "v2",
+				cacheManager.getCache("videoVersions").get(VIDEO_ID, VersionedAsset.class).getVersion());
+
+	}
+
+	/**
+	 * Tests the kept video shares its payload with the cached videos of the
+	 * same content, as the returned one does.
+	 */
+	@Test
+	public void testKeptVideoSharesPayload() {
+
+		Video other = cacheableAssetsServiceClient.assetPayloads.share("other_video",
+				new Video("other_video", new String("c_" + VIDEO_ID)));
+
+		Video loaded = cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+		VersionedAsset<?> kept = cacheManager.getCache("videoVersions").get(VIDEO_ID, VersionedAsset.class);
+
+		assertSame("Payload not shared", other.getCaption(), loaded.getCaption());
+		assertSame("Kept video not the shared one", loaded, kept.getAsset());
+
+	}
+
+	/**
+	 * Tests the loaded video holds the id it was requested with, the cache
+	 * key, rather than the equal id received from the assets service.
+	 */
+	@Test
+	public void testLoadedVideoSharesRequestedId() {
+
+		String videoId = new String(VIDEO_ID);
+
+		assertSame("Id not shared", videoId, cacheableAssetsServiceClient.getVideoByIdCacheable(videoId).getId());
+
+	}
+
+	/**
+	 * Tests a "not modified" answer without a kept version is a failure.
+	 */
+	@Test(expected = ServiceException.class)
+	public void testNotModifiedWithoutKeptVersionFails() {
+
+		given(assetsServiceClientMock.getVideoByIdIfModified(VIDEO_ID, null))
+				.willReturn(CompletableFuture.completedFuture(VersionedAsset.<Video>notModified("v1")));
+
+		cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+
+	}
+
+	/**
+	 * Tests a caller without a kept version does not join a revalidation in
+	 * progress for a version it does not hold, e.g. after the versions cache
+	 * was cleared.
+	 */
+	@Test
+	public void testRevalidationNotSharedAcrossVersions() throws Exception {
+
+		CompletableFuture<VersionedAsset<Video>> revalidation = new CompletableFuture<>();
+		given(assetsServiceClientMock.getVideoByIdIfModified(VIDEO_ID, "v1")).willReturn(revalidation);
+		Video first = cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID);
+		ExecutorService callers = Executors.newSingleThreadExecutor();
+		try {
+			Future<Video> revalidating = callers
+					.submit(() -> cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID));
+			verify(assetsServiceClientMock, timeout(5000)).getVideoByIdIfModified(VIDEO_ID, "v1");
+			cacheManager.getCache("videoVersions").clear();
+
+			assertSame("Unconditional fetch not made", video,
+					cacheableAssetsServiceClient.getVideoByIdCacheable(VIDEO_ID));
+
+			revalidation.complete(VersionedAsset.<Video>notModified("v1"));
+			assertSame("Kept video not reused", first, revalidating.get(5, TimeUnit.SECONDS));
+		} finally {
+			callers.shutdownNow();
+		}
+
+	}
+
+}
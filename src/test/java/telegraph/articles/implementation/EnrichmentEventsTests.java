@@ -0,0 +1,168 @@
+package telegraph.articles.implementation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.models.ArticleReference;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.Video;
+import telegraph.articles.tracing.AssetFetchEvent;
+import telegraph.articles.tracing.AssetLoadEvent;
+import telegraph.articles.tracing.EnrichmentEvent;
+import telegraph.articles.tracing.Outcome;
+import telegraph.articles.tracing.ReferenceFetchEvent;
+
+/**
+ * The Class EnrichmentEventsTests.
+ *
+ * Records an enrichment and checks each of its stages emitted its event.
+ */
+public class EnrichmentEventsTests {
+
+	private static final String ARTICLE_ID = "article";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** The enricher under test, without caching proxy. */
+	private ArticleEnricherImpl articleEnricher;
+
+	@Before
+	public void setUp() {
+		ArticleRepositoryClient articleRepositoryClientMock = mock(ArticleRepositoryClient.class);
+		AssetsServiceClient assetsServiceClientMock = mock(AssetsServiceClient.class);
+		given(articleRepositoryClientMock.getArticleReferenceForId(ARTICLE_ID)).willReturn(CompletableFuture
+				.completedFuture(new ArticleReference(ARTICLE_ID, "name", "image", Arrays.asList("video_a"))));
+		given(assetsServiceClientMock.getImageById("image"))
+				.willReturn(CompletableFuture.completedFuture(new Image("image", "altText")));
+		given(assetsServiceClientMock.getVideoById("video_a"))
+				.willReturn(CompletableFuture.completedFuture(new Video("video_a", "caption")));
+
+		CacheableAssetsServiceClientImpl cacheableAssetsServiceClient = new CacheableAssetsServiceClientImpl();
+		cacheableAssetsServiceClient.assetsServiceClient = assetsServiceClientMock;
+		cacheableAssetsServiceClient.cacheManager = new ConcurrentMapCacheManager();
+		cacheableAssetsServiceClient.assetPayloads = new AssetPayloads();
+		cacheableAssetsServiceClient.serviceTimeouts = ServiceTimeoutsTests.fixed(10_000L);
+
+		articleEnricher = new ArticleEnricherImpl();
+		articleEnricher.articleReferences = new ArticleReferences();
+		articleEnricher.articleReferences.articleRepositoryClient = articleRepositoryClientMock;
+		articleEnricher.articleReferences.serviceTimeouts = cacheableAssetsServiceClient.serviceTimeouts;
+		articleEnricher.casheableAssetsServiceClient = cacheableAssetsServiceClient;
+		articleEnricher.failureLog = new FailureLog();
+		ReflectionTestUtils.setField(articleEnricher, "threads", 8);
+		ReflectionTestUtils.setField(articleEnricher, "queue", 8);
+		articleEnricher.startExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		articleEnricher.stopExecutor();
+	}
+
+	/**
+	 * Tests an enrichment emits its own event, the reference fetch, the asset
+	 * fetches and, the cache being bypassed, the asset loads.
+	 */
+	@Test
+	public void testEnrichmentEmitsEvents() throws Exception {
+
+		Path dump = folder.newFile("enrichment.jfr").toPath();
+		try (Recording recording = new Recording()) {
+			for (String name : Arrays.asList(EnrichmentEvent.NAME, ReferenceFetchEvent.NAME, AssetFetchEvent.NAME,
+					AssetLoadEvent.NAME)) {
+				recording.enable(name).withoutThreshold();
+			}
+			recording.start();
+			articleEnricher.enrichArticleWithId(ARTICLE_ID).get(5, TimeUnit.SECONDS);
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		Map<String, List<RecordedEvent>> events = read(dump);
+		assertEquals(1, events.get(EnrichmentEvent.NAME).size());
+		RecordedEvent enrichment = events.get(EnrichmentEvent.NAME).get(0);
+		assertEquals(ARTICLE_ID, enrichment.getString("articleId"));
+		assertEquals(Outcome.SUCCESS, enrichment.getString("outcome"));
+		assertEquals(1, events.get(ReferenceFetchEvent.NAME).size());
+		assertEquals(2, events.get(AssetFetchEvent.NAME).size());
+		for (RecordedEvent fetch : events.get(AssetFetchEvent.NAME)) {
+			assertEquals(ARTICLE_ID, fetch.getString("articleId"));
+			assertTrue(Arrays.asList("image", "video_a").contains(fetch.getString("assetId")));
+			assertFalse(fetch.getBoolean("cacheHit"));
+			assertTrue(fetch.getDuration("queueWait").toNanos() >= 0);
+		}
+		assertEquals(2, events.get(AssetLoadEvent.NAME).size());
+
+	}
+
+	/**
+	 * Tests a fetch is a cache hit unless a load runs within it, a fetch not
+	 * recorded included.
+	 */
+	@Test
+	public void testCacheMissFlagsOnlyItsFetch() throws Exception {
+
+		Path dump = folder.newFile("fetches.jfr").toPath();
+		AssetFetchEvent unrecorded = AssetFetchEvent.start(ARTICLE_ID, "image", AssetFetchEvent.IMAGE,
+				System.nanoTime());
+		try (Recording recording = new Recording()) {
+			recording.enable(AssetFetchEvent.NAME).withoutThreshold();
+			recording.start();
+			AssetFetchEvent miss = AssetFetchEvent.start(ARTICLE_ID, "video_a", AssetFetchEvent.VIDEO,
+					System.nanoTime());
+			AssetLoadEvent.start("video_a", AssetFetchEvent.VIDEO).complete(null);
+			miss.complete(null);
+			unrecorded.complete(null);
+			AssetLoadEvent.start("video_b", AssetFetchEvent.VIDEO).complete(null);
+			AssetFetchEvent hit = AssetFetchEvent.start(ARTICLE_ID, "video_c", AssetFetchEvent.VIDEO,
+					System.nanoTime());
+			hit.complete(null);
+			recording.stop();
+			recording.dump(dump);
+		}
+
+		Map<String, Boolean> cacheHits = new HashMap<>();
+		for (RecordedEvent fetch : read(dump).get(AssetFetchEvent.NAME)) {
+			cacheHits.put(fetch.getString("assetId"), fetch.getBoolean("cacheHit"));
+		}
+		assertEquals(Boolean.FALSE, cacheHits.get("video_a"));
+		assertEquals(Boolean.TRUE, cacheHits.get("video_c"));
+
+	}
+
+	private static Map<String, List<RecordedEvent>> read(Path dump) throws IOException {
+		Map<String, List<RecordedEvent>> events = new HashMap<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+			events.computeIfAbsent(event.getEventType().getName(), k -> new ArrayList<>()).add(event);
+		}
+		return events;
+	}
+
+}
@@ -0,0 +1,66 @@
+package telegraph.articles.implementation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * The Class PayloadStoreTests.
+ */
+public class PayloadStoreTests {
+
+	@Test
+	public void testSameContentShared() {
+
+		PayloadStore store = new PayloadStore();
+		String first = store.acquire("a", new String("caption"));
+		String second = store.acquire("b", new String("caption"));
+		String other = store.acquire("c", new String("other caption"));
+
+		assertSame(first, second);
+		assertNotSame(first, other);
+		assertEquals(3, store.getEntries());
+		assertEquals(2, store.getPayloads());
+		assertEquals(2 * PayloadStore.retainedSize("caption") + PayloadStore.retainedSize("other caption"),
+				store.getLogicalBytes());
+		assertEquals(PayloadStore.retainedSize("caption") + PayloadStore.retainedSize("other caption"),
+				store.getStoredBytes());
+
+	}
+
+	@Test
+	public void testReleasedWithLastEntry() {
+
+		PayloadStore store = new PayloadStore();
+		String first = store.acquire("a", new String("caption"));
+		store.acquire("b", new String("caption"));
+
+		store.release("a");
+		assertEquals(1, store.getPayloads());
+		assertSame(first, store.acquire("c", new String("caption")));
+
+		store.release("b");
+		store.release("c");
+		assertEquals(0, store.getPayloads());
+		assertEquals(0, store.getLogicalBytes());
+		assertEquals(0, store.getStoredBytes());
+
+	}
+
+	@Test
+	public void testReloadedEntryCountedOnce() {
+
+		PayloadStore store = new PayloadStore();
+		store.acquire("a", new String("caption"));
+		store.acquire("a", new String("caption"));
+		store.acquire("a", new String("new caption"));
+
+		assertEquals(1, store.getEntries());
+		assertEquals(1, store.getPayloads());
+		assertEquals(PayloadStore.retainedSize("new caption"), store.getLogicalBytes());
+
+	}
+
+}
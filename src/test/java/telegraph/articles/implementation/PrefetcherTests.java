@@ -0,0 +1,144 @@
+package telegraph.articles.implementation;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.models.ArticleReference;
+
+/**
+ * The Class PrefetcherTests.
+ *
+ * Serves "a" then "b", so that serving "a" again prefetches "b": a later
+ * access to "b" is a hit only if that prefetch completed.
+ */
+public class PrefetcherTests {
+
+	private ArticleRepositoryClient articleRepositoryClientMock;
+
+	/** The prefetcher under test. */
+	private Prefetcher prefetcher;
+
+	@Before
+	public void setUp() {
+		articleRepositoryClientMock = mock(ArticleRepositoryClient.class);
+
+		prefetcher = new Prefetcher();
+		prefetcher.articleReferences = new ArticleReferences();
+		prefetcher.articleReferences.articleRepositoryClient = articleRepositoryClientMock;
+		prefetcher.articleReferences.serviceTimeouts = ServiceTimeoutsTests.fixed(10_000L);
+		prefetcher.casheableAssetsServiceClient = mock(CacheableAssetsServiceClient.class);
+		ReflectionTestUtils.setField(prefetcher, "window", 1);
+		ReflectionTestUtils.setField(prefetcher, "fanout", 1);
+		ReflectionTestUtils.setField(prefetcher, "maxArticles", 10);
+		ReflectionTestUtils.setField(prefetcher, "maxSuccessors", 4);
+		ReflectionTestUtils.setField(prefetcher, "graphQueue", 16);
+		ReflectionTestUtils.setField(prefetcher, "threads", 1);
+		ReflectionTestUtils.setField(prefetcher, "queue", 4);
+		ReflectionTestUtils.setField(prefetcher, "perSecond", 100);
+		prefetcher.start();
+	}
+
+	@After
+	public void tearDown() {
+		prefetcher.stop();
+	}
+
+	/**
+	 * Tests a completed prefetch counts as a hit.
+	 */
+	@Test
+	public void testCompletedPrefetchIsHit() {
+
+		given(articleRepositoryClientMock.getArticleReferenceForId("b")).willReturn(
+				CompletableFuture.completedFuture(new ArticleReference("b", "name", "image", Collections.emptyList())));
+
+		prefetchB();
+		await().atMost(5, TimeUnit.SECONDS).until(() -> prefetcher.isPrefetched("b"));
+		prefetcher.served("b");
+
+		assertEquals(1, prefetcher.getHits());
+
+	}
+
+	/**
+	 * Tests a prefetch still in progress does not count as a hit.
+	 */
+	@Test
+	public void testPrefetchInProgressIsNoHit() {
+
+		given(articleRepositoryClientMock.getArticleReferenceForId("b")).willReturn(new CompletableFuture<>());
+
+		prefetchB();
+		prefetcher.served("b");
+
+		assertEquals(0, prefetcher.getHits());
+
+	}
+
+	/**
+	 * Tests a failed prefetch does not count as a hit.
+	 */
+	@Test
+	public void testFailedPrefetchIsNoHit() {
+
+		CompletableFuture<ArticleReference> reference = new CompletableFuture<>();
+		reference.completeExceptionally(new IllegalStateException("b"));
+		given(articleRepositoryClientMock.getArticleReferenceForId("b")).willReturn(reference);
+
+		prefetchB();
+		await().atMost(5, TimeUnit.SECONDS).until(() -> prefetcher.getFailed() == 1);
+		prefetcher.served("b");
+
+		assertEquals(0, prefetcher.getHits());
+
+	}
+
+	/**
+	 * Tests an enrichment of an article being prefetched joins the reference
+	 * lookup of the prefetch.
+	 */
+	@Test
+	public void testEnrichmentJoinsPrefetchLookup() {
+
+		ArticleReference articleReference = new ArticleReference("b", "name", "image", Collections.emptyList());
+		CompletableFuture<ArticleReference> reference = new CompletableFuture<>();
+		given(articleRepositoryClientMock.getArticleReferenceForId("b")).willReturn(reference);
+
+		prefetchB();
+		await().atMost(5, TimeUnit.SECONDS).until(() -> prefetcher.articleReferences.fetches.waiters("b") == 1);
+		CompletableFuture<ArticleReference> enrichment = CompletableFuture
+				.supplyAsync(() -> prefetcher.articleReferences.get("b"));
+		await().atMost(5, TimeUnit.SECONDS).until(() -> prefetcher.articleReferences.fetches.waiters("b") == 2);
+		reference.complete(articleReference);
+
+		assertSame(articleReference, enrichment.join());
+		verify(articleRepositoryClientMock, times(1)).getArticleReferenceForId("b");
+
+	}
+
+	/**
+	 * Teaches the graph that "b" follows "a", then serves "a".
+	 */
+	private void prefetchB() {
+		prefetcher.served("a");
+		prefetcher.served("b");
+		prefetcher.served("a");
+		await().atMost(5, TimeUnit.SECONDS).until(() -> prefetcher.getPrefetched() == 1);
+	}
+
+}
@@ -0,0 +1,71 @@
+package telegraph.articles.implementation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+/**
+ * The Class ServiceCallsTests.
+ */
+public class ServiceCallsTests {
+
+	/**
+	 * Tests the timeouts of a service all throw its preallocated exception.
+	 */
+	@Test
+	public void testTimeoutIsShared() {
+
+		ServiceTimeoutException first = timeout(ServiceCalls.VIDEOS);
+		ServiceTimeoutException second = timeout(ServiceCalls.VIDEOS);
+
+		assertSame(first, second);
+		assertEquals(ServiceCalls.VIDEOS, first.getService());
+		assertEquals(0, first.getStackTrace().length);
+
+	}
+
+	/**
+	 * Tests an answer before the timeout is returned.
+	 */
+	@Test
+	public void testAnswerInTime() {
+
+		CompletableFuture<String> future = new CompletableFuture<>();
+		CompletableFuture.runAsync(() -> future.complete("answer"));
+
+		assertEquals("answer", ServiceCalls.await(future, 10_000L, ServiceCalls.IMAGES));
+
+	}
+
+	/**
+	 * Tests a failed answer is reported as a service failure.
+	 */
+	@Test
+	public void testFailure() {
+
+		CompletableFuture<String> future = new CompletableFuture<>();
+		CompletableFuture.runAsync(() -> future.completeExceptionally(new IllegalStateException("down")));
+
+		try {
+			ServiceCalls.await(future, 10_000L, ServiceCalls.IMAGES);
+			fail();
+		} catch (ServiceException e) {
+			assertEquals(IllegalStateException.class, e.getCause().getCause().getClass());
+		}
+
+	}
+
+	private static ServiceTimeoutException timeout(String service) {
+		try {
+			ServiceCalls.await(new CompletableFuture<String>(), 10L, service);
+		} catch (ServiceTimeoutException e) {
+			return e;
+		}
+		throw new AssertionError("no timeout");
+	}
+
+}
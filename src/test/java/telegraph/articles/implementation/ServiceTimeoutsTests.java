@@ -0,0 +1,125 @@
+package telegraph.articles.implementation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The Class ServiceTimeoutsTests.
+ *
+ * Drives the adaptive timeouts with a manual clock.
+ */
+public class ServiceTimeoutsTests {
+
+	/** The manual clock, in nanoseconds. */
+	private long now;
+
+	/** The timeouts under test. */
+	private ServiceTimeouts serviceTimeouts;
+
+	@Before
+	public void setUp() {
+		serviceTimeouts = fixed(100);
+		ReflectionTestUtils.setField(serviceTimeouts, "videoServiceTimeoutFloor", 20L);
+		ReflectionTestUtils.setField(serviceTimeouts, "videoServiceTimeoutCeiling", 1000L);
+		ReflectionTestUtils.setField(serviceTimeouts, "adaptive", true);
+		ReflectionTestUtils.setField(serviceTimeouts, "percentile", 99.0);
+		ReflectionTestUtils.setField(serviceTimeouts, "headroom", 50.0);
+		ReflectionTestUtils.setField(serviceTimeouts, "window", 10);
+		ReflectionTestUtils.setField(serviceTimeouts, "minSamples", 100L);
+		serviceTimeouts.clock = () -> now;
+		serviceTimeouts.start();
+	}
+
+	/**
+	 * Builds fixed timeouts, the same for all the services.
+	 *
+	 * @param timeout
+	 *            the timeout in milliseconds
+	 * @return the started timeouts
+	 */
+	static ServiceTimeouts fixed(long timeout) {
+		ServiceTimeouts serviceTimeouts = new ServiceTimeouts();
+		ReflectionTestUtils.setField(serviceTimeouts, "referenceServiceTimeout", timeout);
+		ReflectionTestUtils.setField(serviceTimeouts, "imageServiceTimeout", timeout);
+		ReflectionTestUtils.setField(serviceTimeouts, "videoServiceTimeout", timeout);
+		ReflectionTestUtils.setField(serviceTimeouts, "window", 1);
+		serviceTimeouts.start();
+		return serviceTimeouts;
+	}
+
+	/**
+	 * Tests the timeout is the percentile plus headroom once enough latencies
+	 * were observed, and the fixed one before.
+	 */
+	@Test
+	public void testPercentilePlusHeadroom() {
+
+		recordVideos(99, 40);
+		assertEquals(100, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+		recordVideos(1, 200);
+		advance(1);
+		/* p99 of 99 x 40 ms and 1 x 200 ms: 40 ms, counted as 40.96 ms (bucket upper bound), plus 50% */
+		assertEquals(62, serviceTimeouts.get(ServiceCalls.VIDEOS));
+		assertEquals(100, serviceTimeouts.get(ServiceCalls.IMAGES));
+
+	}
+
+	/**
+	 * Tests the timeout stays within its floor and ceiling.
+	 */
+	@Test
+	public void testBounds() {
+
+		recordVideos(100, 1);
+		advance(1);
+		assertEquals(20, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+		advance(10);
+		recordVideos(100, 5000);
+		advance(1);
+		assertEquals(1000, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+	}
+
+	/**
+	 * Tests the latencies leave the window, and the settings apply at once.
+	 */
+	@Test
+	public void testWindowAndRuntimeChanges() {
+
+		recordVideos(100, 40);
+		advance(5);
+		recordVideos(100, 400);
+		advance(1);
+		serviceTimeouts.setPercentile(50);
+		assertEquals(62, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+		advance(5);
+		assertEquals(603, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+		serviceTimeouts.setBounds(ServiceCalls.VIDEOS, 20, 500);
+		assertEquals(500, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+		serviceTimeouts.setAdaptive(false);
+		serviceTimeouts.setTimeout(ServiceCalls.VIDEOS, 250);
+		assertEquals(250, serviceTimeouts.get(ServiceCalls.VIDEOS));
+
+	}
+
+	private void recordVideos(int count, long millis) {
+		for (int i = 0; i < count; i++) {
+			serviceTimeouts.record(ServiceCalls.VIDEOS, TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+	}
+
+	private void advance(long seconds) {
+		now += TimeUnit.SECONDS.toNanos(seconds);
+	}
+
+}
@@ -0,0 +1,216 @@
+package telegraph.articles.prerender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.codec.ArticleCodec;
+import telegraph.articles.models.RichArticle;
+
+/**
+ * The Class PrerenderJobTests.
+ */
+public class PrerenderJobTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ArticleEnricher articleEnricherMock;
+
+	/** The job under test. */
+	private PrerenderJob prerenderJob;
+
+	private Path input;
+
+	private Path output;
+
+	@Before
+	public void setUp() throws IOException {
+		articleEnricherMock = mock(ArticleEnricher.class);
+		given(articleEnricherMock.enrichArticleWithId(anyString())).willAnswer(invocation -> {
+			String articleId = invocation.getArgumentAt(0, String.class);
+			CompletableFuture<RichArticle> enrichment = new CompletableFuture<>();
+			if (articleId.startsWith("bad")) {
+				enrichment.completeExceptionally(new IllegalStateException(articleId));
+			} else {
+				CompletableFuture.runAsync(() -> enrichment.complete(SegmentStoreTests.article(articleId)));
+			}
+			return enrichment;
+		});
+
+		prerenderJob = new PrerenderJob();
+		prerenderJob.articleEnricher = articleEnricherMock;
+		ReflectionTestUtils.setField(prerenderJob, "concurrency", 4);
+		ReflectionTestUtils.setField(prerenderJob, "checkpointEvery", 2);
+		ReflectionTestUtils.setField(prerenderJob, "reportSeconds", 10);
+
+		input = folder.newFile("ids.txt").toPath();
+		output = folder.newFolder("prerender").toPath();
+	}
+
+	/**
+	 * Tests all the articles are written, the failed ones listed.
+	 */
+	@Test
+	public void testRendersAllArticles() throws Exception {
+
+		Files.write(input, Arrays.asList("a", "b", "bad", "", "c", "d", "e"), StandardCharsets.UTF_8);
+
+		PrerenderJob.Progress progress = prerenderJob.run(input, output);
+
+		assertEquals(5, progress.getRendered());
+		assertEquals(1, progress.getFailed());
+		assertEquals(1, progress.getSkipped());
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"), sorted(SegmentStoreTests.read(output)));
+		assertEquals(Collections.singletonList("bad"),
+				Files.readAllLines(output.resolve(SegmentStore.FAILED), StandardCharsets.UTF_8));
+
+	}
+
+	/**
+	 * Tests a crashed run resumes from its checkpoint, without enriching
+	 * again the articles written.
+	 */
+	@Test
+	public void testResumesCrashedRun() throws Exception {
+
+		Files.write(input, Arrays.asList("a", "b", "c", "d"), StandardCharsets.UTF_8);
+		try (SegmentStore store = SegmentStore.open(output)) {
+			store.append("a", ArticleCodec.encode(SegmentStoreTests.article("a")));
+			store.checkpoint(1);
+			/* written after the last checkpoint, before the crash */
+			store.append("c", ArticleCodec.encode(SegmentStoreTests.article("c")));
+		}
+
+		PrerenderJob.Progress progress = prerenderJob.run(input, output);
+
+		assertEquals(2, progress.getRendered());
+		assertEquals(1, progress.getSkipped());
+		verify(articleEnricherMock, never()).enrichArticleWithId("a");
+		verify(articleEnricherMock, never()).enrichArticleWithId("c");
+		assertEquals(Arrays.asList("a", "b", "c", "d"), sorted(SegmentStoreTests.read(output)));
+
+		prerenderJob.run(input, output);
+		verify(articleEnricherMock, times(1)).enrichArticleWithId("b");
+
+	}
+
+	/**
+	 * Tests a run killed after checkpointing while a lower line was still in
+	 * progress resumes without writing again the articles of the lines
+	 * processed beyond it.
+	 */
+	@Test
+	public void testResumesOutOfOrderCheckpoint() throws Exception {
+
+		Files.write(input, Arrays.asList("a", "b", "c", "d", "e", "f"), StandardCharsets.UTF_8);
+		given(articleEnricherMock.enrichArticleWithId(anyString())).willAnswer(invocation -> CompletableFuture
+				.completedFuture(SegmentStoreTests.article(invocation.getArgumentAt(0, String.class))));
+		/* b is held while the lines after it complete and are checkpointed, until the run is killed */
+		given(articleEnricherMock.enrichArticleWithId("b")).willReturn(new CompletableFuture<>());
+
+		ExecutorService runner = Executors.newSingleThreadExecutor();
+		Future<PrerenderJob.Progress> killed = runner.submit(() -> prerenderJob.run(input, output));
+		verify(articleEnricherMock, timeout(5000)).enrichArticleWithId("f");
+		runner.shutdownNow();
+		try {
+			killed.get(5, TimeUnit.SECONDS);
+			fail("Run not killed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof InterruptedException);
+		}
+		try (SegmentStore store = SegmentStore.open(output)) {
+			assertEquals(1, store.getResumeLine());
+			assertTrue(store.isDone(2));
+		}
+
+		given(articleEnricherMock.enrichArticleWithId("b"))
+				.willReturn(CompletableFuture.completedFuture(SegmentStoreTests.article("b")));
+		PrerenderJob.Progress progress = prerenderJob.run(input, output);
+
+		assertEquals(1, progress.getRendered());
+		assertEquals(4, progress.getSkipped());
+		for (String articleId : Arrays.asList("a", "c", "d", "e", "f")) {
+			verify(articleEnricherMock, times(1)).enrichArticleWithId(articleId);
+		}
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), sorted(SegmentStoreTests.read(output)));
+
+	}
+
+	/**
+	 * Tests an article whose id is too long to be stored fails alone, the
+	 * run completing.
+	 */
+	@Test
+	public void testUnstorableIdFailsAlone() throws Exception {
+
+		char[] longId = new char[0x10000];
+		Arrays.fill(longId, 'x');
+		Files.write(input, Arrays.asList("a", new String(longId), "c"), StandardCharsets.UTF_8);
+
+		PrerenderJob.Progress progress = prerenderJob.run(input, output);
+
+		assertEquals(2, progress.getRendered());
+		assertEquals(1, progress.getFailed());
+		verify(articleEnricherMock, never()).enrichArticleWithId(new String(longId));
+		assertEquals(Arrays.asList("a", "c"), sorted(SegmentStoreTests.read(output)));
+		assertEquals(Collections.singletonList(new String(longId)),
+				Files.readAllLines(output.resolve(SegmentStore.FAILED), StandardCharsets.UTF_8));
+
+		progress = prerenderJob.run(input, output);
+		assertEquals(0, progress.getRendered() + progress.getFailed());
+
+	}
+
+	/**
+	 * Tests an article that cannot be encoded fails alone.
+	 */
+	@Test
+	public void testUnencodableArticleFailsAlone() throws Exception {
+
+		Files.write(input, Arrays.asList("a", "b", "c"), StandardCharsets.UTF_8);
+		given(articleEnricherMock.enrichArticleWithId("b")).willReturn(CompletableFuture.completedFuture(null));
+
+		PrerenderJob.Progress progress = prerenderJob.run(input, output);
+
+		assertEquals(2, progress.getRendered());
+		assertEquals(1, progress.getFailed());
+		assertEquals(Collections.singletonList("b"),
+				Files.readAllLines(output.resolve(SegmentStore.FAILED), StandardCharsets.UTF_8));
+
+	}
+
+	private static List<String> sorted(List<String> ids) {
+		Collections.sort(ids);
+		return ids;
+	}
+
+}
@@ -0,0 +1,133 @@
+package telegraph.articles.prerender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import telegraph.articles.codec.ArticleCodec;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class SegmentStoreTests.
+ */
+public class SegmentStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests the articles are read back in the order they were written.
+	 */
+	@Test
+	public void testAppendAndRead() throws IOException {
+
+		Path directory = folder.getRoot().toPath();
+		try (SegmentStore store = SegmentStore.open(directory)) {
+			store.append("a", ArticleCodec.encode(article("a")));
+			store.append("b", ArticleCodec.encode(article("b")));
+			store.checkpoint(2);
+		}
+
+		assertEquals(Arrays.asList("a", "b"), read(directory));
+		try (SegmentStore store = SegmentStore.open(directory)) {
+			assertEquals(2, store.getResumeLine());
+		}
+
+	}
+
+	/**
+	 * Tests reopening after a crash keeps the complete records written since
+	 * the checkpoint and drops a torn one.
+	 */
+	@Test
+	public void testRecoversAfterCrash() throws IOException {
+
+		Path directory = folder.getRoot().toPath();
+		try (SegmentStore store = SegmentStore.open(directory)) {
+			store.append("a", ArticleCodec.encode(article("a")));
+			store.fail("x");
+			store.checkpoint(2);
+			store.append("b", ArticleCodec.encode(article("b")));
+			store.fail("y");
+			store.append("c", ArticleCodec.encode(article("c")));
+		}
+		try (FileChannel segment = FileChannel.open(directory.resolve(SegmentStore.SEGMENT),
+				StandardOpenOption.WRITE)) {
+			segment.truncate(segment.size() - 3);
+		}
+
+		try (SegmentStore store = SegmentStore.open(directory)) {
+			assertEquals(2, store.getResumeLine());
+			assertFalse(store.isRecovered("a"));
+			assertTrue(store.isRecovered("b"));
+			assertFalse(store.isRecovered("c"));
+			store.append("c", ArticleCodec.encode(article("c")));
+			store.checkpoint(4);
+		}
+
+		assertEquals(Arrays.asList("a", "b", "c"), read(directory));
+		assertEquals(Collections.singletonList("x"),
+				Files.readAllLines(directory.resolve(SegmentStore.FAILED), StandardCharsets.UTF_8));
+
+	}
+
+	/**
+	 * Tests an article whose id is too long for the index is rejected before
+	 * anything is written.
+	 */
+	@Test
+	public void testLongIdRejectedBeforeWriting() throws IOException {
+
+		Path directory = folder.getRoot().toPath();
+		char[] longId = new char[0x10000];
+		Arrays.fill(longId, 'x');
+		try (SegmentStore store = SegmentStore.open(directory)) {
+			store.append("a", ArticleCodec.encode(article("a")));
+			long segmentLength = store.getSegmentLength();
+			try {
+				store.append(new String(longId), ArticleCodec.encode(article("b")));
+				fail("Long id accepted");
+			} catch (IllegalArgumentException e) {
+				assertEquals(segmentLength, store.getSegmentLength());
+			}
+			store.append("c", ArticleCodec.encode(article("c")));
+			store.checkpoint(3);
+		}
+
+		assertEquals(Arrays.asList("a", "c"), read(directory));
+
+	}
+
+	static RichArticle article(String id) {
+		return new RichArticle(id, "name " + id, new Image(id + "_heroImageUrl", "altText"),
+				Arrays.asList(new Video(id + "_video_a", "c_a"), new Video(id + "_video_b", "c_b")));
+	}
+
+	static List<String> read(Path directory) throws IOException {
+		List<String> ids = new ArrayList<>();
+		SegmentStore.read(directory, (id, content) -> {
+			assertEquals(id, ArticleCodec.decode(content).getId());
+			ids.add(id);
+		});
+		return ids;
+	}
+
+}
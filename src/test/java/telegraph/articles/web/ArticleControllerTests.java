@@ -0,0 +1,305 @@
+package telegraph.articles.web;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.implementation.ServiceException;
+import telegraph.articles.implementation.ServiceTimeoutException;
+import telegraph.articles.models.ArticleReference;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class ArticleControllerTests.
+ *
+ * Drives the endpoint through MockMvc, the enricher mocked and the asset
+ * caches held in memory: the enrichment completes the deferred result, then
+ * the body is streamed.
+ */
+public class ArticleControllerTests {
+
+	private static final String ARTICLE_ID = "article";
+
+	private ArticleEnricher articleEnricherMock;
+
+	private ConcurrentMapCacheManager cacheManager;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+		articleEnricherMock = mock(ArticleEnricher.class);
+		cacheManager = new ConcurrentMapCacheManager();
+
+		RichArticleJsonWriter richArticleJsonWriter = new RichArticleJsonWriter();
+		richArticleJsonWriter.objectMapper = new ObjectMapper();
+		ReflectionTestUtils.setField(richArticleJsonWriter, "videosPerChunk", 1);
+
+		ArticleController articleController = new ArticleController();
+		articleController.articleEnricher = articleEnricherMock;
+		articleController.richArticleJsonWriter = richArticleJsonWriter;
+		articleController.cacheManager = cacheManager;
+		mockMvc = MockMvcBuilders.standaloneSetup(articleController).build();
+	}
+
+	/**
+	 * Tests the article is streamed as JSON with its entity tag.
+	 */
+	@Test
+	public void testStreamsArticle() throws Exception {
+
+		RichArticle richArticle = cache(article("caption"));
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(richArticle));
+
+		complete(getArticle(null)).andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, ArticleETags.of(richArticle)))
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.id").value(ARTICLE_ID))
+				.andExpect(jsonPath("$.heroImage.altText").value("altText"))
+				.andExpect(jsonPath("$.videos[1].id").value("video_b"))
+				.andExpect(jsonPath("$.videos[1].caption").value("caption"));
+
+	}
+
+	/**
+	 * Tests a client holding the current tag gets a 304 without enrichment.
+	 */
+	@Test
+	public void testNotModifiedWithoutEnrichment() throws Exception {
+
+		RichArticle richArticle = cache(article("caption"));
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(richArticle));
+		given(articleEnricherMock.getArticleReferenceForId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(reference(richArticle)));
+		String eTag = ArticleETags.of(richArticle);
+		complete(getArticle(null)).andExpect(status().isOk());
+
+		complete(getArticle(eTag)).andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+		verify(articleEnricherMock, times(1)).enrichArticleWithId(ARTICLE_ID);
+
+	}
+
+	/**
+	 * Tests a known tag is not trusted once the article reference changed,
+	 * its assets still cached: the renamed article is enriched again.
+	 */
+	@Test
+	public void testReferenceChangeInvalidatesKnownTag() throws Exception {
+
+		RichArticle original = cache(article("caption"));
+		RichArticle renamed = new RichArticle(ARTICLE_ID, "new name", original.getHeroImage(),
+				original.getVideos());
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(original))
+				.willReturn(CompletableFuture.completedFuture(renamed));
+		given(articleEnricherMock.getArticleReferenceForId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(reference(renamed)));
+		String eTag = ArticleETags.of(original);
+		complete(getArticle(null)).andExpect(status().isOk());
+
+		complete(getArticle(eTag)).andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, ArticleETags.of(renamed)))
+				.andExpect(jsonPath("$.name").value("new name"));
+
+		verify(articleEnricherMock, times(2)).enrichArticleWithId(ARTICLE_ID);
+
+	}
+
+	/**
+	 * Tests a known tag is not trusted once a video was added to the
+	 * article reference.
+	 */
+	@Test
+	public void testVideoAddedInvalidatesKnownTag() throws Exception {
+
+		RichArticle original = cache(article("caption"));
+		List<Video> videos = new ArrayList<>(original.getVideos());
+		videos.add(new Video("video_c", "c_c"));
+		RichArticle extended = new RichArticle(ARTICLE_ID, "name", original.getHeroImage(), videos);
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(original))
+				.willReturn(CompletableFuture.completedFuture(extended));
+		given(articleEnricherMock.getArticleReferenceForId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(reference(extended)));
+		complete(getArticle(null)).andExpect(status().isOk());
+
+		complete(getArticle(ArticleETags.of(original))).andExpect(status().isOk())
+				.andExpect(jsonPath("$.videos[2].id").value("video_c"));
+
+		verify(articleEnricherMock, times(2)).enrichArticleWithId(ARTICLE_ID);
+
+	}
+
+	/**
+	 * Tests a known tag is not trusted once one of its assets was replaced:
+	 * the article is enriched again and the new version served.
+	 */
+	@Test
+	public void testAssetChangeInvalidatesKnownTag() throws Exception {
+
+		RichArticle original = cache(article("caption"));
+		RichArticle changed = article("new caption");
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(original))
+				.willReturn(CompletableFuture.completedFuture(changed));
+		String eTag = ArticleETags.of(original);
+		complete(getArticle(null)).andExpect(status().isOk());
+
+		cache(changed);
+		complete(getArticle(eTag)).andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, ArticleETags.of(changed)))
+				.andExpect(jsonPath("$.videos[1].caption").value("new caption"));
+
+		verify(articleEnricherMock, times(2)).enrichArticleWithId(ARTICLE_ID);
+
+	}
+
+	/**
+	 * Tests a known tag whose asset entry has expired is re-derived by a new
+	 * enrichment, unchanged content still answering 304.
+	 */
+	@Test
+	public void testExpiredAssetRevalidatesKnownTag() throws Exception {
+
+		RichArticle richArticle = cache(article("caption"));
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID))
+				.willReturn(CompletableFuture.completedFuture(richArticle));
+		String eTag = ArticleETags.of(richArticle);
+		complete(getArticle(null)).andExpect(status().isOk());
+
+		cacheManager.getCache("videos").evict("video_a");
+		complete(getArticle(eTag)).andExpect(status().isNotModified());
+
+		verify(articleEnricherMock, times(2)).enrichArticleWithId(ARTICLE_ID);
+
+	}
+
+	/**
+	 * Tests a service timeout answers 504.
+	 */
+	@Test
+	public void testTimeoutIsGatewayTimeout() throws Exception {
+
+		CompletableFuture<RichArticle> enrichment = new CompletableFuture<>();
+		enrichment.completeExceptionally(new ServiceTimeoutException("videos", new TimeoutException()));
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID)).willReturn(enrichment);
+
+		complete(getArticle(null)).andExpect(status().isGatewayTimeout());
+
+	}
+
+	/**
+	 * Tests a full enrichment queue answers 503.
+	 */
+	@Test
+	public void testRejectionIsServiceUnavailable() throws Exception {
+
+		CompletableFuture<RichArticle> enrichment = new CompletableFuture<>();
+		enrichment.completeExceptionally(new RejectedExecutionException("queue full"));
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID)).willReturn(enrichment);
+
+		complete(getArticle(null)).andExpect(status().isServiceUnavailable());
+
+	}
+
+	/**
+	 * Tests any other failure answers 502.
+	 */
+	@Test
+	public void testFailureIsBadGateway() throws Exception {
+
+		CompletableFuture<RichArticle> enrichment = new CompletableFuture<>();
+		enrichment.completeExceptionally(new ServiceException("videos", new IllegalStateException("down")));
+		given(articleEnricherMock.enrichArticleWithId(ARTICLE_ID)).willReturn(enrichment);
+
+		complete(getArticle(null)).andExpect(status().isBadGateway());
+
+	}
+
+	private static MockHttpServletRequestBuilder getArticle(String ifNoneMatch) {
+		MockHttpServletRequestBuilder request = get("/articles/" + ARTICLE_ID);
+		return ifNoneMatch == null ? request : request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+	}
+
+	/**
+	 * Performs a request, dispatches the deferred result and, for a streamed
+	 * body, waits for it to be written.
+	 */
+	private ResultActions complete(MockHttpServletRequestBuilder articleRequest) throws Exception {
+		MvcResult result = mockMvc.perform(articleRequest).andExpect(request().asyncStarted()).andReturn();
+		result.getAsyncResult();
+		ResultActions dispatched = mockMvc.perform(asyncDispatch(result));
+		result = dispatched.andReturn();
+		if (result.getRequest().isAsyncStarted()) {
+			/* waits for the body, written to the response on the streaming executor */
+			result.getAsyncResult();
+		}
+		return dispatched;
+	}
+
+	/**
+	 * Puts the assets of an article in the asset caches, as the caching proxy
+	 * does.
+	 */
+	private RichArticle cache(RichArticle richArticle) {
+		Cache images = cacheManager.getCache("images");
+		Cache videos = cacheManager.getCache("videos");
+		images.put(richArticle.getId(), richArticle.getHeroImage());
+		for (Video video : richArticle.getVideos()) {
+			videos.put(video.getId(), video);
+		}
+		return richArticle;
+	}
+
+	private static ArticleReference reference(RichArticle richArticle) {
+		List<String> videoUrls = new ArrayList<>();
+		for (Video video : richArticle.getVideos()) {
+			videoUrls.add(video.getId());
+		}
+		return new ArticleReference(richArticle.getId(), richArticle.getName(), richArticle.getHeroImage().getId(),
+				videoUrls);
+	}
+
+	private static RichArticle article(String caption) {
+		return new RichArticle(ARTICLE_ID, "name", new Image("image", "altText"),
+				Arrays.asList(new Video("video_a", "c_a"), new Video("video_b", caption)));
+	}
+
+}
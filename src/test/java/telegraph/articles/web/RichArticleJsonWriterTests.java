@@ -0,0 +1,70 @@
+package telegraph.articles.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class RichArticleJsonWriterTests.
+ */
+public class RichArticleJsonWriterTests {
+
+	private ObjectMapper objectMapper;
+
+	/** The writer under test. */
+	private RichArticleJsonWriter richArticleJsonWriter;
+
+	@Before
+	public void setUp() {
+		objectMapper = new ObjectMapper();
+		richArticleJsonWriter = new RichArticleJsonWriter();
+		richArticleJsonWriter.objectMapper = objectMapper;
+		ReflectionTestUtils.setField(richArticleJsonWriter, "videosPerChunk", 1);
+	}
+
+	/**
+	 * Tests a null video is written as null, the stream being left open.
+	 */
+	@Test
+	public void testNullVideoWrittenStreamLeftOpen() throws Exception {
+
+		RichArticle richArticle = new RichArticle("article", "name", new Image("image", "altText"),
+				Arrays.asList(new Video("video_a", "c_a"), null));
+		CloseTrackingStream out = new CloseTrackingStream();
+
+		richArticleJsonWriter.write(richArticle, out);
+
+		assertFalse("Stream closed", out.closed);
+		JsonNode json = objectMapper.readTree(new String(out.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals("video_a", json.get("videos").get(0).get("id").asText());
+		assertTrue(json.get("videos").get(1).isNull());
+
+	}
+
+	private static final class CloseTrackingStream extends ByteArrayOutputStream {
+
+		private boolean closed;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package telegraph.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.implementation.FailureLog;
+import telegraph.articles.implementation.ServiceTimeouts;
+
+/**
+ * The Class AdaptiveTimeoutRun.
+ *
+ * Drives the enricher against stubbed services whose latencies jitter around
+ * the fixed timeouts, once with the fixed timeouts and once with the adaptive
+ * ones, and reports the failures, the latencies and the timeouts reached.
+ *
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.AdaptiveTimeoutRun
+ *
+ * Properties: soak.rate (req/s), soak.duration (s), soak.articles, and the
+ * latency profiles of the stubs (soak.reference.*, soak.image.*,
+ * soak.video.*), by default with a p99 above the fixed timeouts. The
+ * services.timeouts.* application properties can be set as system
+ * properties, e.g. -Dservices.timeouts.percentile=99.9.
+ */
+public class AdaptiveTimeoutRun {
+
+	public static void main(String[] args) throws Exception {
+
+		final double rate = SoakRunner.doubleProperty("soak.rate", 500);
+		final long duration = Long.getLong("soak.duration", 60);
+		System.out.printf("%.1f req/s for %d s%n", rate, duration);
+
+		run(rate, duration, false, args);
+		run(rate, duration, true, args);
+
+	}
+
+	private static void run(double rate, long duration, boolean adaptive, String[] args)
+			throws InterruptedException {
+
+		try (StubResponder responder = new StubResponder(Integer.getInteger("soak.responderThreads", 4))) {
+
+			ArticleRepositoryClient articleRepositoryClient = new StubArticleRepositoryClient(
+					SoakRunner.profile("soak.reference", 2, 5, 0), Integer.getInteger("soak.videos", 3), responder);
+			AssetsServiceClient assetsServiceClient = new StubAssetsServiceClient(
+					SoakRunner.profile("soak.image", 5, 15, 0), SoakRunner.profile("soak.video", 40, 150, 0),
+					responder);
+
+			/* the production timeouts and bounds, rather than those of the test resources */
+			List<String> arguments = new ArrayList<>();
+			arguments.add("--services.timeouts.adaptive=" + adaptive);
+			arguments.add("--services.reference.timeout=3");
+			arguments.add("--services.reference.timeout.floor=1");
+			arguments.add("--services.reference.timeout.ceiling=30");
+			arguments.add("--services.images.timeout=10");
+			arguments.add("--services.images.timeout.floor=5");
+			arguments.add("--services.images.timeout.ceiling=100");
+			arguments.add("--services.videos.timeout=100");
+			arguments.add("--services.videos.timeout.floor=20");
+			arguments.add("--services.videos.timeout.ceiling=1000");
+			for (String arg : args) {
+				arguments.add(arg);
+			}
+
+			try (ConfigurableApplicationContext context = SoakRunner.start(articleRepositoryClient,
+					assetsServiceClient, arguments.toArray(new String[arguments.size()]))) {
+
+				ArticleEnricher articleEnricher = context.getBean(ArticleEnricher.class);
+				ExecutorService waiters = Executors.newCachedThreadPool(SoakRunner.daemon("timeout-waiter"));
+				final int articles = Integer.getInteger("soak.articles", 1_000_000);
+				OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(rate,
+						() -> "article-" + ThreadLocalRandom.current().nextInt(articles),
+						LoadTargets.enricher(articleEnricher, waiters));
+
+				generator.run(duration, TimeUnit.SECONDS);
+				SoakRunner.drain(generator, 30);
+				Histogram latencies = generator.getRecorder().getIntervalHistogram();
+				ServiceTimeouts serviceTimeouts = context.getBean(ServiceTimeouts.class);
+
+				System.out.println();
+				System.out.printf("%s timeouts: %d requests, %d failed (%.1f%%)%n", adaptive ? "adaptive" : "fixed",
+						generator.getIssued(), generator.getFailed(),
+						100.0 * generator.getFailed() / Math.max(1, generator.getIssued()));
+				System.out.printf("latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+						latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(90) / 1000.0,
+						latencies.getValueAtPercentile(99) / 1000.0, latencies.getMaxValue() / 1000.0);
+				System.out.printf("failure counters: %s%n", context.getBean(FailureLog.class).getFailureCounts());
+				System.out.printf("timeouts (ms): %s, observed p%s (ms): %s%n", serviceTimeouts.getTimeouts(),
+						serviceTimeouts.getPercentile(), serviceTimeouts.getLatencies());
+				waiters.shutdownNow();
+
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,217 @@
+package telegraph.loadtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import telegraph.articles.codec.ArticleCodec;
+import telegraph.articles.codec.RichArticleView;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class CodecBenchmark.
+ * 
+ * Compares encode and decode speed and encoded size of ArticleCodec, Java
+ * serialization and JSON (Jackson) on a sample of rich articles, plus the
+ * in-place read of the video ids of an encoded record.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.CodecBenchmark
+ * 
+ * codec.articles, codec.videos, codec.warmup and codec.measure (s) tune the run.
+ */
+public class CodecBenchmark {
+
+	/** Keeps the results alive, so that the measured work is not removed. */
+	static volatile long sink;
+
+	public static void main(String[] args) throws Exception {
+
+		final int articles = Integer.getInteger("codec.articles", 1000);
+		final int videos = Integer.getInteger("codec.videos", 5);
+		final long warmup = Long.getLong("codec.warmup", 5);
+		final long measure = Long.getLong("codec.measure", 10);
+
+		final List<RichArticle> sample = new ArrayList<>();
+		for (int a = 0; a < articles; a++) {
+			List<Video> articleVideos = new ArrayList<>();
+			for (int v = 0; v < videos; v++) {
+				articleVideos.add(new Video("article-" + a + "_video_" + v, "Caption of video " + v + " of article " + a));
+			}
+			sample.add(new RichArticle("article-" + a, "Name of article " + a,
+					new Image("article-" + a + "_heroImageUrl", "Alternative text of article " + a), articleVideos));
+		}
+
+		final ObjectMapper mapper = new ObjectMapper();
+		mapper.addMixIn(RichArticle.class, RichArticleMixIn.class);
+		mapper.addMixIn(Image.class, ImageMixIn.class);
+		mapper.addMixIn(Video.class, VideoMixIn.class);
+
+		List<Format> formats = new ArrayList<>();
+		formats.add(new Format("codec") {
+			byte[] encode(RichArticle richArticle) {
+				return ArticleCodec.encode(richArticle).array();
+			}
+
+			RichArticle decode(byte[] bytes) {
+				return ArticleCodec.decode(ByteBuffer.wrap(bytes));
+			}
+		});
+		formats.add(new Format("java") {
+			byte[] encode(RichArticle richArticle) throws IOException {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+					out.writeObject(richArticle);
+				}
+				return bytes.toByteArray();
+			}
+
+			RichArticle decode(byte[] bytes) throws Exception {
+				try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+					return (RichArticle) in.readObject();
+				}
+			}
+		});
+		formats.add(new Format("json") {
+			byte[] encode(RichArticle richArticle) throws IOException {
+				return mapper.writeValueAsBytes(richArticle);
+			}
+
+			RichArticle decode(byte[] bytes) throws IOException {
+				return mapper.readValue(bytes, RichArticle.class);
+			}
+		});
+
+		System.out.printf("%d articles, %d videos each%n", articles, videos);
+		System.out.printf("%-8s %12s %12s %12s%n", "format", "bytes/op", "encode ns", "decode ns");
+		for (Format format : formats) {
+			format.run(sample, warmup, measure);
+		}
+
+		final List<ByteBuffer> encoded = new ArrayList<>();
+		for (RichArticle richArticle : sample) {
+			encoded.add(ArticleCodec.encode(richArticle));
+		}
+		measure("codec video ids read in place", encoded, warmup, measure);
+
+	}
+
+	/**
+	 * Measures the read of the video ids of encoded records, without decoding
+	 * the rest.
+	 */
+	private static void measure(String name, List<ByteBuffer> encoded, long warmup, long measure) {
+		for (boolean measuring : new boolean[] { false, true }) {
+			final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(measuring ? measure : warmup);
+			long operations = 0;
+			long start = System.nanoTime();
+			while (System.nanoTime() < end) {
+				for (ByteBuffer buffer : encoded) {
+					RichArticleView view = ArticleCodec.view(buffer);
+					for (int v = 0; v < view.videoCount(); v++) {
+						sink += view.videoIdBytes(v).remaining();
+					}
+				}
+				operations += encoded.size();
+			}
+			if (measuring) {
+				System.out.printf("%s: %.0f ns/op%n", name, (System.nanoTime() - start) / (double) operations);
+			}
+		}
+	}
+
+	/**
+	 * A measured format.
+	 */
+	private abstract static class Format {
+
+		private final String name;
+
+		Format(String name) {
+			this.name = name;
+		}
+
+		abstract byte[] encode(RichArticle richArticle) throws Exception;
+
+		abstract RichArticle decode(byte[] bytes) throws Exception;
+
+		void run(List<RichArticle> sample, long warmup, long measure) throws Exception {
+
+			final List<byte[]> encoded = new ArrayList<>();
+			long bytes = 0;
+			for (RichArticle richArticle : sample) {
+				byte[] record = encode(richArticle);
+				encoded.add(record);
+				bytes += record.length;
+			}
+			encodeNanos(sample, warmup);
+			double encodeNanos = encodeNanos(sample, measure);
+			decodeNanos(encoded, warmup);
+			double decodeNanos = decodeNanos(encoded, measure);
+			System.out.printf("%-8s %12d %12.0f %12.0f%n", name, bytes / sample.size(), encodeNanos, decodeNanos);
+
+		}
+
+		private double encodeNanos(List<RichArticle> sample, long seconds) throws Exception {
+			final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+			final long start = System.nanoTime();
+			long operations = 0;
+			while (System.nanoTime() < end) {
+				for (RichArticle richArticle : sample) {
+					sink += encode(richArticle).length;
+				}
+				operations += sample.size();
+			}
+			return (System.nanoTime() - start) / (double) operations;
+		}
+
+		private double decodeNanos(List<byte[]> encoded, long seconds) throws Exception {
+			final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+			final long start = System.nanoTime();
+			long operations = 0;
+			while (System.nanoTime() < end) {
+				for (byte[] record : encoded) {
+					sink += decode(record).getVideos().size();
+				}
+				operations += encoded.size();
+			}
+			return (System.nanoTime() - start) / (double) operations;
+		}
+
+	}
+
+	/** JSON creator for RichArticle, which has no default constructor. */
+	abstract static class RichArticleMixIn {
+		@JsonCreator
+		RichArticleMixIn(@JsonProperty("id") String id, @JsonProperty("name") String name,
+				@JsonProperty("heroImage") Image heroImage, @JsonProperty("videos") Collection<Video> videos) {
+		}
+	}
+
+	/** JSON creator for Image. */
+	abstract static class ImageMixIn {
+		@JsonCreator
+		ImageMixIn(@JsonProperty("id") String id, @JsonProperty("altText") String altText) {
+		}
+	}
+
+	/** JSON creator for Video. */
+	abstract static class VideoMixIn {
+		@JsonCreator
+		VideoMixIn(@JsonProperty("id") String id, @JsonProperty("caption") String caption) {
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+package telegraph.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import telegraph.articles.implementation.AssetPayloads;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class DedupFootprint.
+ * 
+ * Measures with JOL the heap retained by the cached images and videos, with
+ * and without the content-addressed payload layer, on a workload where a
+ * share of the assets (dedup.duplicates, 0.3 by default) repeats the content
+ * of another asset under a different id. Each payload received is a distinct
+ * instance, as it would be when decoded from a response. The measure with
+ * deduplication includes the payload store.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.DedupFootprint
+ * 
+ * dedup.assets sets the number of videos cached (and a third as many images),
+ * dedup.captionLength the length of the captions and alt texts.
+ */
+public class DedupFootprint {
+
+	public static void main(String[] args) {
+
+		final int assets = Integer.getInteger("dedup.assets", 30000);
+		final double duplicates = SoakRunner.doubleProperty("dedup.duplicates", 0.3);
+		final int captionLength = Integer.getInteger("dedup.captionLength", 200);
+		final Random random = new Random(42);
+
+		final AssetPayloads assetPayloads = new AssetPayloads();
+		final Map<String, Object> plain = new HashMap<>();
+		final Map<String, Object> deduplicated = new HashMap<>();
+		int distinct = 0;
+		for (int i = 0; i < assets; i++) {
+			boolean duplicate = distinct > 0 && random.nextDouble() < duplicates;
+			int content = duplicate ? random.nextInt(distinct) : distinct++;
+			String videoId = "video-" + i;
+			plain.put(videoId, new Video(videoId, caption(content, captionLength)));
+			deduplicated.put(videoId, assetPayloads.share(videoId, new Video(videoId, caption(content, captionLength))));
+			if (i % 3 == 0) {
+				String articleId = "article-" + i / 3;
+				String imageId = "image-" + i;
+				plain.put(articleId, new Image(imageId, caption(content, captionLength / 2)));
+				deduplicated.put(articleId,
+						assetPayloads.share(articleId, new Image(imageId, caption(content, captionLength / 2))));
+			}
+		}
+
+		long plainSize = GraphLayout.parseInstance(plain).totalSize();
+		long deduplicatedSize = GraphLayout.parseInstance(deduplicated, assetPayloads).totalSize();
+		System.out.printf("%d cached assets, %.0f%% duplicate content%n", plain.size(), 100.0 * duplicates);
+		System.out.printf("heap retained: %d bytes plain, %d bytes deduplicated including the store (%.1f%% less)%n",
+				plainSize, deduplicatedSize, 100.0 * (plainSize - deduplicatedSize) / plainSize);
+		System.out.printf("payload store: dedup ratio %.2f, %d bytes stored, %d bytes saved (estimated)%n",
+				assetPayloads.getDedupRatio(), assetPayloads.getBytesStored(), assetPayloads.getBytesSaved());
+
+	}
+
+	/**
+	 * Builds a caption, as a new instance for each call.
+	 */
+	private static String caption(int content, int length) {
+		StringBuilder caption = new StringBuilder(length);
+		caption.append("caption of content ").append(content).append(' ');
+		while (caption.length() < length) {
+			caption.append((char) ('a' + (caption.length() * 31 + content) % 26));
+		}
+		return caption.toString();
+	}
+
+}
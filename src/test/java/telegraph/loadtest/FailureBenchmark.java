@@ -0,0 +1,101 @@
+package telegraph.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.implementation.FailureLog;
+
+/**
+ * The Class FailureBenchmark.
+ * 
+ * Drives the enricher during a simulated incident: by default half of the
+ * article repository calls time out, while the assets come from the caches of
+ * a small set of articles. Reports the throughput and latency of
+ * the requests, failed ones included, and the failure counters.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.FailureBenchmark -Dloadtest.jvmArgs="-Dfailure.timeoutRate=0.9"
+ * 
+ * Properties: failure.rate (req/s), failure.duration and failure.warmup (s),
+ * failure.articles, failure.errorRate (share of failing reference calls),
+ * failure.timeoutRate (share of reference calls answering after the timeout,
+ * pinned to {@value #REFERENCE_TIMEOUT} ms).
+ */
+public class FailureBenchmark {
+
+	/** The reference timeout of the run (ms), the slow answers taking twice as long. */
+	private static final long REFERENCE_TIMEOUT = 10;
+
+	public static void main(String[] args) throws Exception {
+
+		final double rate = SoakRunner.doubleProperty("failure.rate", 500);
+		final long duration = Long.getLong("failure.duration", 60);
+		final long warmup = Long.getLong("failure.warmup", 10);
+		final int articles = Integer.getInteger("failure.articles", 100);
+		final double errorRate = SoakRunner.doubleProperty("failure.errorRate", 0);
+		final double timeoutRate = SoakRunner.doubleProperty("failure.timeoutRate", 0.5);
+
+		try (StubResponder responder = new StubResponder(Integer.getInteger("soak.responderThreads", 4))) {
+
+			ArticleRepositoryClient articleRepositoryClient = new StubArticleRepositoryClient(
+					StubServiceProfile.builder()
+							.latency(LatencyDistribution.mixture(
+									LatencyDistribution.constant(1, TimeUnit.MILLISECONDS),
+									LatencyDistribution.constant(2 * REFERENCE_TIMEOUT, TimeUnit.MILLISECONDS),
+									timeoutRate))
+							.errorRate(errorRate).build(),
+					3, responder);
+			AssetsServiceClient assetsServiceClient = new StubAssetsServiceClient(
+					SoakRunner.profile("soak.image", 2, 5, 0), SoakRunner.profile("soak.video", 5, 20, 0), responder);
+
+			List<String> arguments = new ArrayList<>();
+			arguments.add("--services.reference.timeout=" + REFERENCE_TIMEOUT);
+			arguments.addAll(Arrays.asList(args));
+			try (ConfigurableApplicationContext context = SoakRunner.start(articleRepositoryClient,
+					assetsServiceClient, arguments.toArray(new String[arguments.size()]))) {
+
+				ArticleEnricher articleEnricher = context.getBean(ArticleEnricher.class);
+				ExecutorService waiters = Executors.newCachedThreadPool(SoakRunner.daemon("failure-waiter"));
+
+				if (warmup > 0) {
+					System.out.printf("warming up for %d s%n", warmup);
+					load(rate, articles, articleEnricher, waiters).run(warmup, TimeUnit.SECONDS);
+				}
+
+				System.out.printf("failing %.0f%% (+%.0f%% timeouts) of %.1f req/s for %d s%n", errorRate * 100,
+						timeoutRate * 100, rate, duration);
+				OpenLoopLoadGenerator generator = load(rate, articles, articleEnricher, waiters);
+				SoakReporter reporter = new SoakReporter(generator, System.out);
+				ScheduledExecutorService reporting = Executors
+						.newSingleThreadScheduledExecutor(SoakRunner.daemon("failure-report"));
+				reporting.scheduleAtFixedRate(reporter, 10, 10, TimeUnit.SECONDS);
+
+				generator.run(duration, TimeUnit.SECONDS);
+				SoakRunner.drain(generator, 30);
+				reporting.shutdownNow();
+				reporter.summary();
+				System.out.printf("failure counters: %s%n", context.getBean(FailureLog.class).getFailureCounts());
+				waiters.shutdownNow();
+
+			}
+		}
+
+	}
+
+	private static OpenLoopLoadGenerator load(double rate, int articles, ArticleEnricher articleEnricher,
+			ExecutorService waiters) {
+		return new OpenLoopLoadGenerator(rate, () -> "article-" + ThreadLocalRandom.current().nextInt(articles),
+				LoadTargets.enricher(articleEnricher, waiters));
+	}
+
+}
@@ -0,0 +1,163 @@
+package telegraph.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import telegraph.articles.models.ArticleReference;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.RichArticle;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class FootprintReport.
+ * 
+ * Measures with JOL the heap retained per cached article: the cache keys, the
+ * cached hero image and videos and the rich article built on them. Every
+ * string received from a service is a distinct instance, as it would be when
+ * decoded from a response: the assets loader replaces the ids of the loaded
+ * assets by the equal urls of the reference, which are also the cache keys.
+ * The "before" layout mirrors the models keeping every id received, with
+ * ArrayList backed collections.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.FootprintReport
+ * 
+ * footprint.articles and footprint.videos set the number of articles and of
+ * videos per article. No structure is shared across articles, so the layouts
+ * account for all the heap retained.
+ */
+public class FootprintReport {
+
+	public static void main(String[] args) {
+
+		final int articles = Integer.getInteger("footprint.articles", 10000);
+		final int videos = Integer.getInteger("footprint.videos", 3);
+
+		final List<Object> before = new ArrayList<>();
+		final List<Object> after = new ArrayList<>();
+		for (int a = 0; a < articles; a++) {
+			String id = "article-" + a;
+			before.add(legacyCachedArticle(id, videos));
+			after.add(cachedArticle(id, videos));
+		}
+
+		GraphLayout beforeLayout = GraphLayout.parseInstance((Object) before.toArray());
+		GraphLayout afterLayout = GraphLayout.parseInstance((Object) after.toArray());
+		System.out.println("Before:");
+		System.out.println(beforeLayout.toFootprint());
+		System.out.println("After:");
+		System.out.println(afterLayout.toFootprint());
+		System.out.printf("bytes per cached article (%d videos): before %d, after %d (%.1f%% less)%n", videos,
+				beforeLayout.totalSize() / articles, afterLayout.totalSize() / articles,
+				100.0 * (beforeLayout.totalSize() - afterLayout.totalSize()) / beforeLayout.totalSize());
+
+	}
+
+	/**
+	 * The objects retained for an article by the current models.
+	 *
+	 * @param id
+	 *            the article id
+	 * @param videos
+	 *            the number of videos
+	 * @return the retained objects
+	 */
+	private static Object[] cachedArticle(String id, int videos) {
+
+		List<String> videoUrls = new ArrayList<>();
+		for (int v = 0; v < videos; v++) {
+			videoUrls.add(received(id + "_video_" + v));
+		}
+		ArticleReference reference = new ArticleReference(received(id), received(id + "_name"),
+				received(id + "_heroImageUrl"), videoUrls);
+
+		/* loaded with ids of their own, replaced by the urls of the reference */
+		Image image = new Image(reference.getHeroImageUrl(), received("altText"));
+		List<Video> cachedVideos = new ArrayList<>();
+		for (String url : reference.getVideoUrls()) {
+			cachedVideos.add(new Video(url, received("c_" + url)));
+		}
+		RichArticle richArticle = new RichArticle(reference.getId(), reference.getName(), image, cachedVideos);
+		return new Object[] { reference.getId(), reference.getVideoUrls().toArray(), richArticle };
+
+	}
+
+	/**
+	 * The objects retained for an article by the former models.
+	 *
+	 * @param id
+	 *            the article id
+	 * @param videos
+	 *            the number of videos
+	 * @return the retained objects
+	 */
+	private static Object[] legacyCachedArticle(String id, int videos) {
+
+		List<String> videoUrls = new ArrayList<>();
+		for (int v = 0; v < videos; v++) {
+			videoUrls.add(received(id + "_video_" + v));
+		}
+		LegacyReference reference = new LegacyReference(received(id), received(id + "_name"),
+				received(id + "_heroImageUrl"), videoUrls);
+
+		LegacyAsset image = new LegacyAsset(received(reference.heroImageUrl), received("altText"));
+		List<LegacyAsset> cachedVideos = new ArrayList<>();
+		for (String url : reference.videoUrls) {
+			cachedVideos.add(new LegacyAsset(received(url), received("c_" + url)));
+		}
+		LegacyRichArticle richArticle = new LegacyRichArticle(reference.id, reference.name, image, cachedVideos);
+		return new Object[] { reference.id, reference.videoUrls.toArray(), richArticle };
+
+	}
+
+	/**
+	 * A string as decoded from a service response, distinct from any equal one.
+	 */
+	private static String received(String value) {
+		return new String(value.toCharArray());
+	}
+
+	/** Former layout of ArticleReference. */
+	private static class LegacyReference {
+		final String id;
+		final String name;
+		final String heroImageUrl;
+		final Collection<String> videoUrls;
+
+		LegacyReference(String id, String name, String heroImageUrl, Collection<String> videoUrls) {
+			this.id = id;
+			this.name = name;
+			this.heroImageUrl = heroImageUrl;
+			this.videoUrls = videoUrls;
+		}
+	}
+
+	/** Former layout of Image and Video. */
+	private static class LegacyAsset {
+		final String id;
+		final String text;
+
+		LegacyAsset(String id, String text) {
+			this.id = id;
+			this.text = text;
+		}
+	}
+
+	/** Former layout of RichArticle. */
+	private static class LegacyRichArticle {
+		final String id;
+		final String name;
+		final LegacyAsset heroImage;
+		final Collection<LegacyAsset> videos;
+
+		LegacyRichArticle(String id, String name, LegacyAsset heroImage, Collection<LegacyAsset> videos) {
+			this.id = id;
+			this.name = name;
+			this.heroImage = heroImage;
+			this.videos = videos;
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+package telegraph.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+
+/**
+ * The Class HttpLoadRunner.
+ * 
+ * Starts the application with its HTTP endpoint on a local port, against the
+ * stubbed downstream services, and drives GET /articles/{id} with an open loop
+ * load. A share of the requests revalidates the last entity tag received for
+ * the article, to exercise the 304 path.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.HttpLoadRunner -Dloadtest.jvmArgs="-Dsoak.rate=500"
+ * 
+ * Takes the soak.* properties of {@link SoakRunner}, plus http.clients (client
+ * threads) and http.revalidate (share of conditional requests).
+ */
+public class HttpLoadRunner {
+
+	public static void main(String[] args) throws Exception {
+
+		final double rate = SoakRunner.doubleProperty("soak.rate", 200);
+		final long duration = Long.getLong("soak.duration", 600);
+		final long warmup = Long.getLong("soak.warmup", 30);
+		final long reportEvery = Long.getLong("soak.report", 10);
+		final ZipfDistribution popularity = new ZipfDistribution(Integer.getInteger("soak.articles", 10000),
+				SoakRunner.doubleProperty("soak.zipf", 1.0));
+		final double errorRate = SoakRunner.doubleProperty("soak.errorRate", 0.001);
+		final int clients = Integer.getInteger("http.clients", 256);
+		final double revalidate = SoakRunner.doubleProperty("http.revalidate", 0.5);
+		System.setProperty("http.maxConnections", String.valueOf(clients));
+
+		try (StubResponder responder = new StubResponder(Integer.getInteger("soak.responderThreads", 4))) {
+
+			ArticleRepositoryClient articleRepositoryClient = new StubArticleRepositoryClient(
+					SoakRunner.profile("soak.reference", 2, 8, errorRate), Integer.getInteger("soak.videos", 3),
+					responder);
+			AssetsServiceClient assetsServiceClient = new StubAssetsServiceClient(
+					SoakRunner.profile("soak.image", 20, 80, errorRate),
+					SoakRunner.profile("soak.video", 50, 400, errorRate), responder);
+
+			try (ConfigurableApplicationContext context = SoakRunner
+					.application(articleRepositoryClient, assetsServiceClient).properties("server.port=0").run(args)) {
+
+				final int port = context.getEnvironment().getProperty("local.server.port", Integer.class);
+				final ExecutorService clientPool = Executors.newFixedThreadPool(clients, SoakRunner.daemon("http-client"));
+				final HttpTarget target = new HttpTarget("http://localhost:" + port + "/articles/", revalidate,
+						clientPool);
+
+				if (warmup > 0) {
+					System.out.printf("warming up for %d s%n", warmup);
+					load(rate, popularity, target).run(warmup, TimeUnit.SECONDS);
+				}
+
+				System.out.printf("loading http://localhost:%d at %.1f req/s for %d s%n", port, rate, duration);
+				target.reset();
+				OpenLoopLoadGenerator generator = load(rate, popularity, target);
+				SoakReporter reporter = new SoakReporter(generator, System.out);
+				ScheduledExecutorService reporting = Executors
+						.newSingleThreadScheduledExecutor(SoakRunner.daemon("http-report"));
+				reporting.scheduleAtFixedRate(reporter, reportEvery, reportEvery, TimeUnit.SECONDS);
+
+				generator.run(duration, TimeUnit.SECONDS);
+				SoakRunner.drain(generator, Long.getLong("soak.drain", 30));
+				reporting.shutdownNow();
+				reporter.summary();
+				System.out.printf("responses: %d ok, %d not modified, %d bytes received%n", target.ok.sum(),
+						target.notModified.sum(), target.bytes.sum());
+				clientPool.shutdownNow();
+
+			}
+		}
+
+	}
+
+	private static OpenLoopLoadGenerator load(double rate, ZipfDistribution popularity, HttpTarget target) {
+		return new OpenLoopLoadGenerator(rate, () -> "article-" + popularity.next(ThreadLocalRandom.current()),
+				target::get);
+	}
+
+	/**
+	 * Blocking HTTP client calls, run on a bounded pool. Time spent waiting for
+	 * a client thread is part of the measured latency.
+	 */
+	private static class HttpTarget {
+
+		private final String baseUrl;
+		private final double revalidate;
+		private final ExecutorService clientPool;
+		private final Map<String, String> eTags = new ConcurrentHashMap<>();
+		private final LongAdder ok = new LongAdder();
+		private final LongAdder notModified = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+
+		HttpTarget(String baseUrl, double revalidate, ExecutorService clientPool) {
+			this.baseUrl = baseUrl;
+			this.revalidate = revalidate;
+			this.clientPool = clientPool;
+		}
+
+		CompletableFuture<Integer> get(String articleId) {
+			final String eTag = ThreadLocalRandom.current().nextDouble() < revalidate ? eTags.get(articleId) : null;
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return get(articleId, eTag);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, clientPool);
+		}
+
+		private int get(String articleId, String eTag) throws IOException {
+			HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + articleId).openConnection();
+			if (eTag != null) {
+				connection.setRequestProperty("If-None-Match", eTag);
+			}
+			int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				notModified.increment();
+				return status;
+			}
+			if (status != HttpURLConnection.HTTP_OK) {
+				drain(connection.getErrorStream());
+				throw new IllegalStateException("HTTP " + status);
+			}
+			bytes.add(drain(connection.getInputStream()));
+			eTags.put(articleId, connection.getHeaderField("ETag"));
+			ok.increment();
+			return status;
+		}
+
+		/** Reads a body fully, so that the connection can be reused. */
+		private static long drain(InputStream in) throws IOException {
+			long read = 0;
+			if (in != null) {
+				try (InputStream body = in) {
+					byte[] buffer = new byte[8192];
+					for (int n; (n = body.read(buffer)) != -1;) {
+						read += n;
+					}
+				}
+			}
+			return read;
+		}
+
+		void reset() {
+			ok.reset();
+			notModified.reset();
+			bytes.reset();
+		}
+
+	}
+
+}
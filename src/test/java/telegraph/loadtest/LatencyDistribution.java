@@ -0,0 +1,96 @@
+package telegraph.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Interface LatencyDistribution.
+ * 
+ * Source of response delays for the stubbed downstream services. Delays are
+ * expressed in microseconds.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+	/** The z-score of the 99th percentile of a standard normal distribution. */
+	double Z_99 = 2.3263478740408408;
+
+	/**
+	 * Next delay.
+	 *
+	 * @param random
+	 *            the random source
+	 * @return the next delay in microseconds
+	 */
+	long nextMicros(Random random);
+
+	/**
+	 * Constant delay.
+	 *
+	 * @param delay
+	 *            the delay
+	 * @param unit
+	 *            the time unit
+	 * @return the latency distribution
+	 */
+	static LatencyDistribution constant(long delay, TimeUnit unit) {
+		final long micros = unit.toMicros(delay);
+		return random -> micros;
+	}
+
+	/**
+	 * Uniformly distributed delay in [min, max).
+	 *
+	 * @param min
+	 *            the minimum delay
+	 * @param max
+	 *            the maximum delay
+	 * @param unit
+	 *            the time unit
+	 * @return the latency distribution
+	 */
+	static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+		final long minMicros = unit.toMicros(min);
+		final long spanMicros = Math.max(1, unit.toMicros(max) - minMicros);
+		return random -> minMicros + (long) (random.nextDouble() * spanMicros);
+	}
+
+	/**
+	 * Log-normal delay, the usual shape of remote service latencies, fitted on
+	 * its median and 99th percentile.
+	 *
+	 * @param median
+	 *            the median delay
+	 * @param p99
+	 *            the 99th percentile delay, must be greater than the median
+	 * @param unit
+	 *            the time unit
+	 * @return the latency distribution
+	 */
+	static LatencyDistribution logNormal(long median, long p99, TimeUnit unit) {
+		if (p99 <= median) {
+			throw new IllegalArgumentException("p99 must be greater than the median");
+		}
+		final double mu = Math.log(unit.toMicros(median));
+		final double sigma = (Math.log(unit.toMicros(p99)) - mu) / Z_99;
+		return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+	}
+
+	/**
+	 * Mixture of two distributions: with the given probability the delay is
+	 * taken from the slow distribution. Useful to model a fraction of requests
+	 * hitting a timeout.
+	 *
+	 * @param fast
+	 *            the fast distribution
+	 * @param slow
+	 *            the slow distribution
+	 * @param slowRate
+	 *            the probability of a slow response
+	 * @return the latency distribution
+	 */
+	static LatencyDistribution mixture(LatencyDistribution fast, LatencyDistribution slow, double slowRate) {
+		return random -> random.nextDouble() < slowRate ? slow.nextMicros(random) : fast.nextMicros(random);
+	}
+
+}
@@ -0,0 +1,67 @@
+package telegraph.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import telegraph.articles.ArticleEnricher;
+
+/**
+ * The Class LoadTargets.
+ * 
+ * Adapters exposing the services under load to the
+ * {@link OpenLoopLoadGenerator}.
+ */
+public final class LoadTargets {
+
+	private LoadTargets() {
+	}
+
+	/**
+	 * Target calling the article enricher in-process. Futures that cannot
+	 * notify their completion are awaited on the given executor.
+	 *
+	 * @param articleEnricher
+	 *            the article enricher
+	 * @param waiters
+	 *            the executor awaiting blocking futures
+	 * @return the target
+	 */
+	public static Function<String, CompletionStage<?>> enricher(ArticleEnricher articleEnricher, Executor waiters) {
+		return articleId -> toCompletionStage(articleEnricher.enrichArticleWithId(articleId), waiters);
+	}
+
+	/**
+	 * Adapts a future to a completion stage.
+	 *
+	 * @param <T>
+	 *            the result type
+	 * @param future
+	 *            the future
+	 * @param waiters
+	 *            the executor awaiting the future if it is not a completion
+	 *            stage already
+	 * @return the completion stage
+	 */
+	public static <T> CompletionStage<T> toCompletionStage(Future<T> future, Executor waiters) {
+		if (future instanceof CompletionStage) {
+			@SuppressWarnings("unchecked")
+			CompletionStage<T> stage = (CompletionStage<T>) future;
+			return stage;
+		}
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}, waiters);
+	}
+
+}
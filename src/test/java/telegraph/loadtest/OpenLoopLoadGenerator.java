@@ -0,0 +1,167 @@
+package telegraph.loadtest;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Recorder;
+
+/**
+ * The Class OpenLoopLoadGenerator.
+ * 
+ * Issues requests at a fixed arrival rate, independently of how fast the
+ * target answers. The latency of each request is measured from its intended
+ * start time, so a stalled target is charged for the requests it delayed and
+ * the percentiles are free from coordinated omission.
+ */
+public class OpenLoopLoadGenerator {
+
+	/** The number of significant digits kept by the histograms. */
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	/** The interval between two intended request starts, in nanoseconds. */
+	private final long intervalNanos;
+
+	/** The source of the requested article ids. */
+	private final Supplier<String> articleIds;
+
+	/** The target under load. */
+	private final Function<String, ? extends CompletionStage<?>> target;
+
+	/** The latency recorder, in microseconds. */
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+	/** The number of issued requests. */
+	private final LongAdder issued = new LongAdder();
+
+	/** The number of requests completed successfully. */
+	private final LongAdder succeeded = new LongAdder();
+
+	/** The number of requests completed with a failure. */
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * Instantiates a new open loop load generator.
+	 *
+	 * @param ratePerSecond
+	 *            the arrival rate
+	 * @param articleIds
+	 *            the source of the requested article ids
+	 * @param target
+	 *            the target under load
+	 */
+	public OpenLoopLoadGenerator(double ratePerSecond, Supplier<String> articleIds,
+			Function<String, ? extends CompletionStage<?>> target) {
+		if (ratePerSecond <= 0) {
+			throw new IllegalArgumentException("rate must be positive");
+		}
+		this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+		this.articleIds = articleIds;
+		this.target = target;
+	}
+
+	/**
+	 * Issues requests for the given duration on the calling thread. Requests
+	 * still outstanding when the method returns keep being recorded.
+	 *
+	 * @param duration
+	 *            the duration
+	 * @param unit
+	 *            the time unit
+	 */
+	public void run(long duration, TimeUnit unit) {
+
+		final long start = System.nanoTime();
+		final long requests = unit.toNanos(duration) / intervalNanos;
+		for (long i = 0; i < requests && !Thread.currentThread().isInterrupted(); i++) {
+			final long intendedStart = start + i * intervalNanos;
+			long wait;
+			while ((wait = intendedStart - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			issue(intendedStart);
+		}
+
+	}
+
+	/**
+	 * Issues a single request.
+	 *
+	 * @param intendedStart
+	 *            the intended start time
+	 */
+	private void issue(long intendedStart) {
+
+		issued.increment();
+		try {
+			target.apply(articleIds.get()).whenComplete((r, t) -> record(intendedStart, t == null));
+		} catch (RuntimeException e) {
+			record(intendedStart, false);
+		}
+
+	}
+
+	/**
+	 * Records a completed request.
+	 *
+	 * @param intendedStart
+	 *            the intended start time
+	 * @param success
+	 *            whether the request succeeded
+	 */
+	private void record(long intendedStart, boolean success) {
+
+		recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart));
+		(success ? succeeded : failed).increment();
+
+	}
+
+	/**
+	 * Gets the latency recorder. Interval histograms are in microseconds.
+	 *
+	 * @return the recorder
+	 */
+	public Recorder getRecorder() {
+		return recorder;
+	}
+
+	/**
+	 * Gets the number of issued requests.
+	 *
+	 * @return the issued requests
+	 */
+	public long getIssued() {
+		return issued.sum();
+	}
+
+	/**
+	 * Gets the number of requests completed successfully.
+	 *
+	 * @return the succeeded requests
+	 */
+	public long getSucceeded() {
+		return succeeded.sum();
+	}
+
+	/**
+	 * Gets the number of requests completed with a failure.
+	 *
+	 * @return the failed requests
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * Gets the number of requests not completed yet.
+	 *
+	 * @return the outstanding requests
+	 */
+	public long getOutstanding() {
+		return getIssued() - getSucceeded() - getFailed();
+	}
+
+}
@@ -0,0 +1,76 @@
+package telegraph.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import telegraph.articles.implementation.AssetPayloads;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class PayloadContention.
+ * 
+ * Measures the rate at which the cached videos can share their payloads when
+ * loaded from increasing numbers of threads, each store being guarded by a
+ * single lock. Each load replaces the payload of a random key of
+ * payload.keys, with one of payload.contents captions received as a new
+ * instance, as decoded from a response: the old payload is released and the
+ * new one acquired.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.PayloadContention
+ * 
+ * payload.threads (comma separated counts), payload.warmup and
+ * payload.measure (s) tune the run.
+ */
+public class PayloadContention {
+
+	public static void main(String[] args) throws Exception {
+
+		final int keys = Integer.getInteger("payload.keys", 30000);
+		final int contents = Integer.getInteger("payload.contents", 20000);
+		final int captionLength = Integer.getInteger("payload.captionLength", 200);
+		final long warmup = Long.getLong("payload.warmup", 3);
+		final long measure = Long.getLong("payload.measure", 5);
+
+		final String[] captions = new String[contents];
+		for (int i = 0; i < contents; i++) {
+			StringBuilder caption = new StringBuilder(captionLength).append("caption ").append(i).append(' ');
+			while (caption.length() < captionLength) {
+				caption.append((char) ('a' + (caption.length() * 31 + i) % 26));
+			}
+			captions[i] = caption.toString();
+		}
+
+		for (String count : System.getProperty("payload.threads", "1,4,16,64").split(",")) {
+			final int threads = Integer.parseInt(count.trim());
+			final AssetPayloads assetPayloads = new AssetPayloads();
+			final LongAdder loads = new LongAdder();
+			final long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+			final long end = measureFrom + TimeUnit.SECONDS.toNanos(measure);
+			List<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				Thread worker = new Thread(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					long now;
+					while ((now = System.nanoTime()) < end) {
+						String videoId = "video-" + random.nextInt(keys);
+						assetPayloads.share(videoId, new Video(videoId, new String(captions[random.nextInt(contents)])));
+						if (now >= measureFrom) {
+							loads.increment();
+						}
+					}
+				}, "payload-" + t);
+				worker.start();
+				workers.add(worker);
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			System.out.printf("%3d threads: %,.0f loads/s%n", threads, loads.sum() / (double) measure);
+		}
+
+	}
+
+}
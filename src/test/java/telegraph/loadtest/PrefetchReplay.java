@@ -0,0 +1,155 @@
+package telegraph.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.implementation.Prefetcher;
+
+/**
+ * The Class PrefetchReplay.
+ *
+ * Replays an access trace against the enricher and the stubbed services,
+ * once without and once with predictive prefetching, and reports the
+ * latencies, the calls made to the stubbed services and the prefetch hit
+ * rate.
+ *
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.PrefetchReplay
+ *
+ * The trace is read from prefetch.trace (one article id per line) if set.
+ * Otherwise a synthetic one is generated: prefetch.readers concurrent
+ * readers, each entering on a popular article (soak.articles, soak.zipf) and
+ * then, with probability prefetch.follow, opening one of the 3 articles
+ * related to the current one; prefetch.accesses accesses in total, written
+ * to prefetch.traceOut if set. The replay runs at soak.rate req/s. The
+ * prefetch.* application properties can be set as system properties, e.g.
+ * -Dprefetch.threads=16.
+ */
+public class PrefetchReplay {
+
+	/** The number of articles related to each article in the synthetic trace. */
+	private static final int RELATED = 3;
+
+	public static void main(String[] args) throws Exception {
+
+		final List<String> trace = trace();
+		final double rate = SoakRunner.doubleProperty("soak.rate", 500);
+		System.out.printf("replaying %d accesses at %.1f req/s%n", trace.size(), rate);
+
+		replay(trace, rate, false, args);
+		replay(trace, rate, true, args);
+
+	}
+
+	private static void replay(List<String> trace, double rate, boolean prefetch, String[] args)
+			throws InterruptedException {
+
+		try (StubResponder responder = new StubResponder(Integer.getInteger("soak.responderThreads", 4))) {
+
+			ArticleRepositoryClient articleRepositoryClient = new StubArticleRepositoryClient(
+					SoakRunner.profile("soak.reference", 2, 8, 0), Integer.getInteger("soak.videos", 3), responder);
+			AssetsServiceClient assetsServiceClient = new StubAssetsServiceClient(
+					SoakRunner.profile("soak.image", 20, 80, 0), SoakRunner.profile("soak.video", 50, 400, 0),
+					responder);
+
+			List<String> arguments = new ArrayList<>();
+			arguments.add("--prefetch.enabled=" + prefetch);
+			arguments.add("--services.images.timeout=1000");
+			arguments.add("--services.videos.timeout=1000");
+			arguments.add("--services.reference.timeout=100");
+			for (String arg : args) {
+				arguments.add(arg);
+			}
+
+			try (ConfigurableApplicationContext context = SoakRunner.start(articleRepositoryClient,
+					assetsServiceClient, arguments.toArray(new String[arguments.size()]))) {
+
+				ArticleEnricher articleEnricher = context.getBean(ArticleEnricher.class);
+				ExecutorService waiters = Executors.newCachedThreadPool(SoakRunner.daemon("replay-waiter"));
+				final AtomicInteger position = new AtomicInteger();
+				OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(rate,
+						() -> trace.get(position.getAndIncrement() % trace.size()),
+						LoadTargets.enricher(articleEnricher, waiters));
+
+				generator.run((long) (trace.size() * TimeUnit.SECONDS.toNanos(1) / rate), TimeUnit.NANOSECONDS);
+				SoakRunner.drain(generator, 30);
+				Histogram latencies = generator.getRecorder().getIntervalHistogram();
+
+				System.out.println();
+				System.out.printf("prefetching %s: %d requests, %d failed%n", prefetch ? "on" : "off",
+						generator.getIssued(), generator.getFailed());
+				System.out.printf("latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+						latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(90) / 1000.0,
+						latencies.getValueAtPercentile(99) / 1000.0, latencies.getMaxValue() / 1000.0);
+				System.out.printf("stub service calls: %d%n", responder.getCalls());
+				if (prefetch) {
+					Prefetcher prefetcher = context.getBean(Prefetcher.class);
+					System.out.printf("prefetches: %d started, %d dropped, %d failed%n", prefetcher.getPrefetched(),
+							prefetcher.getDropped(), prefetcher.getFailed());
+					System.out.printf("hit rate: %.1f%% of %d served articles had been prefetched; "
+							+ "accuracy: %.1f%% of the prefetched articles were served%n",
+							prefetcher.getHitRate() * 100, prefetcher.getServed(), prefetcher.getAccuracy() * 100);
+				}
+				waiters.shutdownNow();
+
+			}
+		}
+
+	}
+
+	private static List<String> trace() throws IOException {
+
+		String file = System.getProperty("prefetch.trace");
+		if (file != null) {
+			return Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+		}
+
+		final int articles = Integer.getInteger("soak.articles", 10000);
+		final ZipfDistribution entries = new ZipfDistribution(articles, SoakRunner.doubleProperty("soak.zipf", 1.0));
+		final double follow = SoakRunner.doubleProperty("prefetch.follow", 0.7);
+		final Random random = new Random(Long.getLong("prefetch.seed", 42));
+		final int[] readers = new int[Integer.getInteger("prefetch.readers", 8)];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = entries.next(random);
+		}
+
+		final int accesses = Integer.getInteger("prefetch.accesses", 20000);
+		final List<String> trace = new ArrayList<>(accesses);
+		for (int i = 0; i < accesses; i++) {
+			int reader = random.nextInt(readers.length);
+			trace.add("article-" + readers[reader]);
+			readers[reader] = random.nextDouble() < follow ? related(readers[reader], random.nextInt(RELATED), articles)
+					: entries.next(random);
+		}
+
+		String out = System.getProperty("prefetch.traceOut");
+		if (out != null) {
+			Files.write(Paths.get(out), trace, StandardCharsets.UTF_8);
+		}
+		return trace;
+
+	}
+
+	/**
+	 * Gets one of the articles related to an article: a fixed, arbitrary
+	 * choice among all articles.
+	 */
+	private static int related(int article, int k, int articles) {
+		return (int) ((article * 7919L + (k + 1) * 104729L) % articles);
+	}
+
+}
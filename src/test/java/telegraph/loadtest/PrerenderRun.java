@@ -0,0 +1,100 @@
+package telegraph.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.models.ArticleReference;
+
+/**
+ * The Class PrerenderRun.
+ *
+ * Pre-renders a generated catalogue against the stubbed services at several
+ * concurrency levels, and reports the throughput logged by the job, the
+ * calls made to the stubbed services and the size of the store. The videos
+ * of the articles are drawn from a shared pool, so that the asset caches
+ * spare calls across articles.
+ *
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=telegraph.loadtest.PrerenderRun
+ *
+ * Properties: prerender.articles, prerender.sharedVideos (size of the video
+ * pool), prerender.levels (comma separated concurrency levels), and the
+ * latency profiles of the stubs (soak.reference.*, soak.image.*,
+ * soak.video.*).
+ */
+public class PrerenderRun {
+
+	public static void main(String[] args) throws Exception {
+
+		final int articles = Integer.getInteger("prerender.articles", 5000);
+		final int sharedVideos = Integer.getInteger("prerender.sharedVideos", 5000);
+		final Path directory = Files.createTempDirectory("prerender");
+		final Path input = directory.resolve("ids.txt");
+		List<String> ids = new ArrayList<>(articles);
+		for (int i = 0; i < articles; i++) {
+			ids.add("article-" + i);
+		}
+		Files.write(input, ids, StandardCharsets.UTF_8);
+
+		for (String level : System.getProperty("prerender.levels", "8,64,256").split(",")) {
+			run(input, directory.resolve("store-" + level), Integer.parseInt(level.trim()), sharedVideos, args);
+		}
+
+	}
+
+	private static void run(Path input, Path output, int concurrency, int sharedVideos, String[] args)
+			throws Exception {
+
+		try (StubResponder responder = new StubResponder(Integer.getInteger("soak.responderThreads", 4))) {
+
+			final int videosPerArticle = Integer.getInteger("soak.videos", 3);
+			StubArticleRepositoryClient articleRepositoryClient = new StubArticleRepositoryClient(
+					SoakRunner.profile("soak.reference", 2, 8, 0), videosPerArticle, responder) {
+
+				@Override
+				protected ArticleReference reference(String articleId) {
+					Random random = new Random(articleId.hashCode());
+					List<String> videoUrls = new ArrayList<>(videosPerArticle);
+					for (int v = 0; v < videosPerArticle; v++) {
+						videoUrls.add("video-" + random.nextInt(sharedVideos));
+					}
+					return new ArticleReference(articleId, articleId + "_name", articleId + "_heroImageUrl",
+							videoUrls);
+				}
+
+			};
+			AssetsServiceClient assetsServiceClient = new StubAssetsServiceClient(
+					SoakRunner.profile("soak.image", 20, 80, 0), SoakRunner.profile("soak.video", 50, 400, 0),
+					responder);
+
+			List<String> arguments = new ArrayList<>();
+			arguments.add("--prerender.input=" + input);
+			arguments.add("--prerender.output=" + output);
+			arguments.add("--prerender.concurrency=" + concurrency);
+			arguments.add("--services.images.timeout=1000");
+			arguments.add("--services.videos.timeout=1000");
+			arguments.add("--services.reference.timeout=100");
+			arguments.add("--logging.level.telegraph.articles.prerender=INFO");
+			for (String arg : args) {
+				arguments.add(arg);
+			}
+
+			System.out.printf("%nconcurrency %d%n", concurrency);
+			/* the job runs, and logs its throughput, as the application starts */
+			try (ConfigurableApplicationContext context = SoakRunner.start(articleRepositoryClient,
+					assetsServiceClient, arguments.toArray(new String[arguments.size()]))) {
+				System.out.printf("stub service calls: %d, store: %d bytes%n", responder.getCalls(),
+						Files.size(output.resolve("articles.seg")));
+			}
+
+		}
+
+	}
+
+}
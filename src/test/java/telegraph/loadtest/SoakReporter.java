@@ -0,0 +1,136 @@
+package telegraph.loadtest;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The Class SoakReporter.
+ * 
+ * Prints, at every run, the latency percentiles and the throughput of the last
+ * interval together with the live thread count and the heap in use, and keeps
+ * the totals for the final summary.
+ */
+public class SoakReporter implements Runnable {
+
+	/** The scale from the recorded microseconds to the reported milliseconds. */
+	private static final double MICROS_PER_MILLI = 1000.0;
+
+	/** The bytes in a megabyte. */
+	private static final double MEGABYTE = 1024.0 * 1024.0;
+
+	/** The generator under observation. */
+	private final OpenLoopLoadGenerator generator;
+
+	/** The output. */
+	private final PrintStream out;
+
+	/** The latencies of the whole run. */
+	private final Histogram total = new Histogram(3);
+
+	/** The thread MX bean. */
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/** The memory MX bean. */
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+	/** The start time. */
+	private final long start = System.nanoTime();
+
+	/** The interval histogram recycled between runs. */
+	private Histogram interval;
+
+	/** The last interval end time. */
+	private long last = start;
+
+	/** The completed requests at the last interval end. */
+	private long lastCompleted;
+
+	/** The highest heap use observed. */
+	private long peakHeap;
+
+	/**
+	 * Instantiates a new soak reporter.
+	 *
+	 * @param generator
+	 *            the generator under observation
+	 * @param out
+	 *            the output
+	 */
+	public SoakReporter(OpenLoopLoadGenerator generator, PrintStream out) {
+		this.generator = generator;
+		this.out = out;
+		out.printf("%8s %9s %8s %8s %9s %9s %9s %9s %9s %8s %9s%n", "time(s)", "req/s", "errors", "pending",
+				"p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "threads", "heap(MB)");
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public synchronized void run() {
+
+		interval = generator.getRecorder().getIntervalHistogram(interval);
+		total.add(interval);
+		final long now = System.nanoTime();
+		final long completed = generator.getSucceeded() + generator.getFailed();
+		final long heap = memory.getHeapMemoryUsage().getUsed();
+		peakHeap = Math.max(peakHeap, heap);
+		out.printf("%8d %9.1f %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f %8d %9.1f%n", seconds(now - start),
+				perSecond(completed - lastCompleted, now - last), generator.getFailed(), generator.getOutstanding(),
+				millis(interval, 50), millis(interval, 90), millis(interval, 99), millis(interval, 99.9),
+				interval.getMaxValue() / MICROS_PER_MILLI, threads.getThreadCount(), heap / MEGABYTE);
+		last = now;
+		lastCompleted = completed;
+
+	}
+
+	/**
+	 * Prints the summary of the whole run, including the full percentile
+	 * distribution.
+	 */
+	public synchronized void summary() {
+
+		run();
+		final long elapsed = System.nanoTime() - start;
+		out.println();
+		out.printf("requests: %d issued, %d succeeded, %d failed, %d pending%n", generator.getIssued(),
+				generator.getSucceeded(), generator.getFailed(), generator.getOutstanding());
+		out.printf("throughput: %.1f req/s over %d s%n",
+				perSecond(generator.getSucceeded() + generator.getFailed(), elapsed), seconds(elapsed));
+		out.printf("threads: %d live, %d peak; heap: %.1f MB peak%n", threads.getThreadCount(),
+				threads.getPeakThreadCount(), peakHeap / MEGABYTE);
+		out.printf("latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, p99.99 %.2f, max %.2f%n", millis(total, 50),
+				millis(total, 90), millis(total, 99), millis(total, 99.9), millis(total, 99.99),
+				total.getMaxValue() / MICROS_PER_MILLI);
+		out.println();
+		total.outputPercentileDistribution(out, MICROS_PER_MILLI);
+
+	}
+
+	/**
+	 * Gets the latencies of the whole run.
+	 *
+	 * @return the histogram, in microseconds
+	 */
+	public synchronized Histogram getTotal() {
+		return total.copy();
+	}
+
+	private static double millis(Histogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+	}
+
+	private static double perSecond(long count, long nanos) {
+		return nanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
+
+	private static long seconds(long nanos) {
+		return TimeUnit.NANOSECONDS.toSeconds(nanos);
+	}
+
+}
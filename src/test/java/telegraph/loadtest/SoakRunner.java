@@ -0,0 +1,158 @@
+package telegraph.loadtest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import telegraph.TelegraphApplication;
+import telegraph.articles.ArticleEnricher;
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.clients.AssetsServiceClient;
+
+/**
+ * The Class SoakRunner.
+ * 
+ * Boots the application against the stubbed downstream services and drives
+ * the article enricher with an open loop load for a long run.
+ * 
+ * Configured through system properties, e.g.
+ * 
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.jvmArgs="-Dsoak.rate=500 -Dsoak.duration=1800"
+ * 
+ * soak.rate (req/s), soak.duration, soak.warmup and soak.report (s),
+ * soak.articles and soak.zipf (popularity), soak.videos (per article),
+ * soak.{reference,image,video}.median and .p99 (ms), soak.errorRate.
+ */
+public class SoakRunner {
+
+	public static void main(String[] args) throws Exception {
+
+		final double rate = doubleProperty("soak.rate", 200);
+		final long duration = Long.getLong("soak.duration", 600);
+		final long warmup = Long.getLong("soak.warmup", 30);
+		final long reportEvery = Long.getLong("soak.report", 10);
+		final ZipfDistribution popularity = new ZipfDistribution(Integer.getInteger("soak.articles", 10000),
+				doubleProperty("soak.zipf", 1.0));
+		final double errorRate = doubleProperty("soak.errorRate", 0.001);
+
+		try (StubResponder responder = new StubResponder(Integer.getInteger("soak.responderThreads", 4))) {
+
+			ArticleRepositoryClient articleRepositoryClient = new StubArticleRepositoryClient(
+					profile("soak.reference", 2, 8, errorRate), Integer.getInteger("soak.videos", 3), responder);
+			AssetsServiceClient assetsServiceClient = new StubAssetsServiceClient(
+					profile("soak.image", 20, 80, errorRate), profile("soak.video", 50, 400, errorRate), responder);
+
+			try (ConfigurableApplicationContext context = start(articleRepositoryClient, assetsServiceClient, args)) {
+
+				ArticleEnricher articleEnricher = context.getBean(ArticleEnricher.class);
+				ExecutorService waiters = Executors.newCachedThreadPool(daemon("soak-waiter"));
+
+				if (warmup > 0) {
+					System.out.printf("warming up for %d s%n", warmup);
+					load(rate, popularity, articleEnricher, waiters).run(warmup, TimeUnit.SECONDS);
+				}
+
+				System.out.printf("soaking at %.1f req/s for %d s%n", rate, duration);
+				OpenLoopLoadGenerator generator = load(rate, popularity, articleEnricher, waiters);
+				SoakReporter reporter = new SoakReporter(generator, System.out);
+				ScheduledExecutorService reporting = Executors.newSingleThreadScheduledExecutor(daemon("soak-report"));
+				reporting.scheduleAtFixedRate(reporter, reportEvery, reportEvery, TimeUnit.SECONDS);
+
+				generator.run(duration, TimeUnit.SECONDS);
+				drain(generator, Long.getLong("soak.drain", 30));
+				reporting.shutdownNow();
+				reporter.summary();
+				waiters.shutdownNow();
+
+			}
+		}
+
+	}
+
+	/**
+	 * Starts the application with the stubbed clients, no web environment and
+	 * quiet logging. Arguments are passed on, e.g.
+	 * --services.videos.timeout=200.
+	 *
+	 * @param articleRepositoryClient
+	 *            the article repository client
+	 * @param assetsServiceClient
+	 *            the assets service client
+	 * @param args
+	 *            the application arguments
+	 * @return the application context
+	 */
+	static ConfigurableApplicationContext start(ArticleRepositoryClient articleRepositoryClient,
+			AssetsServiceClient assetsServiceClient, String... args) {
+		return application(articleRepositoryClient, assetsServiceClient).web(false).run(args);
+	}
+
+	/**
+	 * Prepares the application with the stubbed clients and quiet logging.
+	 *
+	 * @param articleRepositoryClient
+	 *            the article repository client
+	 * @param assetsServiceClient
+	 *            the assets service client
+	 * @return the application builder
+	 */
+	static SpringApplicationBuilder application(ArticleRepositoryClient articleRepositoryClient,
+			AssetsServiceClient assetsServiceClient) {
+
+		return new SpringApplicationBuilder(TelegraphApplication.class)
+				.properties("logging.level.root=WARN")
+				.initializers(context -> {
+					context.getBeanFactory().registerSingleton("articleRepositoryClient", articleRepositoryClient);
+					context.getBeanFactory().registerSingleton("assetsServiceClient", assetsServiceClient);
+				});
+
+	}
+
+	/**
+	 * Waits for the outstanding requests to complete.
+	 *
+	 * @param generator
+	 *            the generator
+	 * @param timeoutSeconds
+	 *            the maximum wait
+	 */
+	static void drain(OpenLoopLoadGenerator generator, long timeoutSeconds) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+		while (generator.getOutstanding() > 0 && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(100);
+		}
+	}
+
+	private static OpenLoopLoadGenerator load(double rate, ZipfDistribution popularity,
+			ArticleEnricher articleEnricher, ExecutorService waiters) {
+		return new OpenLoopLoadGenerator(rate, () -> "article-" + popularity.next(ThreadLocalRandom.current()),
+				LoadTargets.enricher(articleEnricher, waiters));
+	}
+
+	static StubServiceProfile profile(String prefix, long median, long p99, double errorRate) {
+		return StubServiceProfile.builder()
+				.latency(LatencyDistribution.logNormal(Long.getLong(prefix + ".median", median),
+						Long.getLong(prefix + ".p99", p99), TimeUnit.MILLISECONDS))
+				.errorRate(doubleProperty(prefix + ".errorRate", errorRate)).build();
+	}
+
+	static double doubleProperty(String name, double defaultValue) {
+		String value = System.getProperty(name);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	static ThreadFactory daemon(String name) {
+		return r -> {
+			Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+}
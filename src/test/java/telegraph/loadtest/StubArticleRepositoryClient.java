@@ -0,0 +1,67 @@
+package telegraph.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import telegraph.articles.clients.ArticleRepositoryClient;
+import telegraph.articles.models.ArticleReference;
+
+/**
+ * The Class StubArticleRepositoryClient.
+ * 
+ * In-process article repository answering every id with a generated reference
+ * after a delay drawn from its profile.
+ */
+public class StubArticleRepositoryClient implements ArticleRepositoryClient {
+
+	/** The service profile. */
+	private final StubServiceProfile profile;
+
+	/** The number of videos of each article. */
+	private final int videosPerArticle;
+
+	/** The responder. */
+	private final StubResponder responder;
+
+	/**
+	 * Instantiates a new stub article repository client.
+	 *
+	 * @param profile
+	 *            the service profile
+	 * @param videosPerArticle
+	 *            the number of videos of each article
+	 * @param responder
+	 *            the responder
+	 */
+	public StubArticleRepositoryClient(StubServiceProfile profile, int videosPerArticle, StubResponder responder) {
+		this.profile = profile;
+		this.videosPerArticle = videosPerArticle;
+		this.responder = responder;
+	}
+
+	/* (non-Javadoc)
+	 * @see telegraph.articles.clients.ArticleRepositoryClient#getArticleReferenceForId(java.lang.String)
+	 */
+	@Override
+	public Future<ArticleReference> getArticleReferenceForId(String articleId) {
+		return responder.respond(profile, () -> reference(articleId));
+	}
+
+	/**
+	 * Builds the reference of an article, with the same naming used by the
+	 * application tests.
+	 *
+	 * @param articleId
+	 *            the article id
+	 * @return the article reference
+	 */
+	protected ArticleReference reference(String articleId) {
+		List<String> videoUrls = new ArrayList<>(videosPerArticle);
+		for (int v = 0; v < videosPerArticle; v++) {
+			videoUrls.add(articleId + "_video_" + v);
+		}
+		return new ArticleReference(articleId, articleId + "_name", articleId + "_heroImageUrl", videoUrls);
+	}
+
+}
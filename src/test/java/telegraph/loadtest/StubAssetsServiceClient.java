@@ -0,0 +1,59 @@
+package telegraph.loadtest;
+
+import java.util.concurrent.Future;
+
+import telegraph.articles.clients.AssetsServiceClient;
+import telegraph.articles.models.Image;
+import telegraph.articles.models.Video;
+
+/**
+ * The Class StubAssetsServiceClient.
+ * 
+ * In-process assets service answering every id with a generated asset after a
+ * delay drawn from the image or video profile.
+ */
+public class StubAssetsServiceClient implements AssetsServiceClient {
+
+	/** The image service profile. */
+	private final StubServiceProfile imageProfile;
+
+	/** The video service profile. */
+	private final StubServiceProfile videoProfile;
+
+	/** The responder. */
+	private final StubResponder responder;
+
+	/**
+	 * Instantiates a new stub assets service client.
+	 *
+	 * @param imageProfile
+	 *            the image service profile
+	 * @param videoProfile
+	 *            the video service profile
+	 * @param responder
+	 *            the responder
+	 */
+	public StubAssetsServiceClient(StubServiceProfile imageProfile, StubServiceProfile videoProfile,
+			StubResponder responder) {
+		this.imageProfile = imageProfile;
+		this.videoProfile = videoProfile;
+		this.responder = responder;
+	}
+
+	/* (non-Javadoc)
+	 * @see telegraph.articles.clients.AssetsServiceClient#getImageById(java.lang.String)
+	 */
+	@Override
+	public Future<Image> getImageById(String id) {
+		return responder.respond(imageProfile, () -> new Image(id, "altText"));
+	}
+
+	/* (non-Javadoc)
+	 * @see telegraph.articles.clients.AssetsServiceClient#getVideoById(java.lang.String)
+	 */
+	@Override
+	public Future<Video> getVideoById(String id) {
+		return responder.respond(videoProfile, () -> new Video(id, "c_" + id));
+	}
+
+}
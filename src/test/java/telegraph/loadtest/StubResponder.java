@@ -0,0 +1,114 @@
+package telegraph.loadtest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The Class StubResponder.
+ * 
+ * Completes the responses of the stubbed services on a small shared scheduler,
+ * so that a pending response costs a scheduled task and not a thread.
+ */
+public class StubResponder implements AutoCloseable {
+
+	/** The scheduler completing the responses. */
+	private final ScheduledExecutorService scheduler;
+
+	/** The number of calls received. */
+	private final LongAdder calls = new LongAdder();
+
+	/** The number of calls answered with a failure. */
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Instantiates a new stub responder.
+	 *
+	 * @param threads
+	 *            the number of scheduler threads
+	 */
+	public StubResponder(int threads) {
+		final AtomicInteger count = new AtomicInteger();
+		this.scheduler = Executors.newScheduledThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "stub-responder-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Answers a call according to the given profile.
+	 *
+	 * @param <T>
+	 *            the response type
+	 * @param profile
+	 *            the service profile
+	 * @param response
+	 *            the response supplier
+	 * @return the future completed after the sampled delay
+	 */
+	public <T> Future<T> respond(StubServiceProfile profile, Supplier<T> response) {
+
+		calls.increment();
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final boolean fail = random.nextDouble() < profile.getErrorRate();
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		scheduler.schedule(() -> {
+			if (fail) {
+				failures.increment();
+				future.completeExceptionally(new StubServiceException());
+			} else {
+				future.complete(response.get());
+			}
+		}, profile.getLatency().nextMicros(random), TimeUnit.MICROSECONDS);
+		return future;
+
+	}
+
+	/**
+	 * Gets the number of calls received.
+	 *
+	 * @return the calls
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	/**
+	 * Gets the number of calls answered with a failure.
+	 *
+	 * @return the failures
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * The failure returned by a stubbed service. Stack traces are not filled in,
+	 * they would only measure the stub.
+	 */
+	public static class StubServiceException extends RuntimeException {
+
+		private static final long serialVersionUID = 2706307930167401213L;
+
+		public StubServiceException() {
+			super("stubbed service failure", null, false, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,26 @@
+package telegraph.loadtest;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The Class StubServiceProfile.
+ * 
+ * Behaviour of a stubbed downstream service: how long it takes to answer and
+ * how often it fails.
+ */
+@Getter
+@Builder
+public class StubServiceProfile {
+
+	/** The response delay distribution. */
+	@Builder.Default
+	private final LatencyDistribution latency = LatencyDistribution.constant(1, TimeUnit.MILLISECONDS);
+
+	/** The probability of answering with a failure after the delay. */
+	@Builder.Default
+	private final double errorRate = 0;
+
+}
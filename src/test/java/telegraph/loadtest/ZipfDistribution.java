@@ -0,0 +1,61 @@
+package telegraph.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The Class ZipfDistribution.
+ * 
+ * Samples ranks in [0, size) with probability proportional to 1/(rank+1)^exponent,
+ * modelling the article popularity: a few articles get most of the requests.
+ */
+public class ZipfDistribution {
+
+	/** The cumulative distribution function, one entry per rank. */
+	private final double[] cdf;
+
+	/**
+	 * Instantiates a new zipf distribution.
+	 *
+	 * @param size
+	 *            the number of ranks
+	 * @param exponent
+	 *            the skew, 0 gives a uniform distribution
+	 */
+	public ZipfDistribution(int size, double exponent) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("size must be positive");
+		}
+		cdf = new double[size];
+		double sum = 0;
+		for (int rank = 0; rank < size; rank++) {
+			sum += 1.0 / Math.pow(rank + 1, exponent);
+			cdf[rank] = sum;
+		}
+		for (int rank = 0; rank < size; rank++) {
+			cdf[rank] /= sum;
+		}
+	}
+
+	/**
+	 * Next rank.
+	 *
+	 * @param random
+	 *            the random source
+	 * @return the sampled rank, 0 being the most popular
+	 */
+	public int next(Random random) {
+		int index = Arrays.binarySearch(cdf, random.nextDouble());
+		return Math.min(index < 0 ? -index - 1 : index, cdf.length - 1);
+	}
+
+	/**
+	 * Gets the number of ranks.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return cdf.length;
+	}
+
+}